@@ -0,0 +1,116 @@
+package benchmark;
+
+import config.AppConfig;
+import database.TextEntity;
+import messaging.CommandCodec;
+import messaging.CommandCodec.Opcode;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import replica.CommandDispatcher;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link CommandDispatcher} replicas use (opcode read from the bytes, then a table
+ * lookup) with the string path they used before it (decode the body, attempt a JSONObject, then
+ * startsWith/equals and split), for every command type. Run with -prof gc to see the allocation
+ * difference as well.
+ *
+ * This lives outside src so the application builds without JMH. Compile it against the
+ * application classes plus jmh-core and jmh-generator-annprocess (as the annotation processor).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandDispatchBenchmark {
+
+    @Param({"READ_LAST", "READ_ALL", "READ_ALL_JSON", "STATUS", "WRITE", "WRITE_JSON"})
+    public String command;
+
+    private byte[] body;
+    private CommandDispatcher dispatcher;
+    private Blackhole blackhole; // set per invocation, read by the handlers
+
+    @Setup
+    public void setUp() {
+        String message = switch (command) {
+            case "READ_LAST" -> AppConfig.MSG_READ_LAST;
+            case "READ_ALL" -> AppConfig.MSG_READ_ALL;
+            case "READ_ALL_JSON" -> AppConfig.MSG_READ_ALL + "_JSON";
+            case "STATUS" -> AppConfig.MSG_STATUS_CHECK;
+            case "WRITE" -> AppConfig.MSG_WRITE_PREFIX + "1234 The quick brown fox jumps over the lazy dog";
+            default -> "{\"line_number\": 1234, \"content\": \"The quick brown fox jumps over the lazy dog\"}";
+        };
+        body = message.getBytes(StandardCharsets.UTF_8);
+
+        // Same opcodes as ReplicaEngine's table; the handlers only parse what the command carries
+        CommandDispatcher.Handler parseWrite = (bytes, properties) -> blackhole.consume(CommandCodec.parseWrite(bytes, 0));
+        dispatcher = new CommandDispatcher()
+                .on(Opcode.READ_LAST, (bytes, properties) -> blackhole.consume(1))
+                .on(Opcode.READ_ALL, (bytes, properties) -> blackhole.consume(2))
+                .on(Opcode.READ_ALL_JSON, (bytes, properties) -> blackhole.consume(3))
+                .on(Opcode.STATUS, (bytes, properties) -> blackhole.consume(4))
+                .on(Opcode.WRITE, parseWrite)
+                .on(Opcode.WRITE_JSON, parseWrite)
+                .on(Opcode.UNKNOWN, (bytes, properties) -> blackhole.consume(0));
+    }
+
+    @Benchmark
+    public void stringDispatch(Blackhole blackhole) {
+        String message = new String(body, StandardCharsets.UTF_8);
+
+        JSONObject json = null;
+        try {
+            json = new JSONObject(message);
+        } catch (Exception e) {
+            // Not a JSON message, will process as text command
+        }
+
+        if (message.startsWith(AppConfig.MSG_WRITE_PREFIX)) {
+            String[] parts = message.substring(AppConfig.MSG_WRITE_PREFIX.length()).split(" ", 2);
+            blackhole.consume(new TextEntity(Integer.parseInt(parts[0]), parts[1], 0));
+        } else if (message.equals(AppConfig.MSG_READ_LAST)) {
+            blackhole.consume(1);
+        } else if (message.equals(AppConfig.MSG_READ_ALL)) {
+            blackhole.consume(2);
+        } else if (message.equals(AppConfig.MSG_READ_ALL + "_JSON")) {
+            blackhole.consume(3);
+        } else if (message.equals(AppConfig.MSG_STATUS_CHECK)) {
+            blackhole.consume(4);
+        } else if (json != null && json.has("line_number") && json.has("content")) {
+            blackhole.consume(new TextEntity(json.getInt("line_number"), json.getString("content"), 0));
+        }
+    }
+
+    @Benchmark
+    public void byteDispatch(Blackhole blackhole) throws Exception {
+        this.blackhole = blackhole;
+        dispatcher.dispatch(body, null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CommandDispatchBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
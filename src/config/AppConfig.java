@@ -6,7 +6,8 @@ public class AppConfig {
     public static final String RABBITMQ_USER = "guest";
     public static final String RABBITMQ_PASSWORD = "guest";
 
-    public static final String EXCHANGE_NAME = "replica_exchange";
+    public static final String EXCHANGE_NAME = "replica_exchange";           // Reads and status checks
+    public static final String WRITE_EXCHANGE_NAME = "replica_write_exchange"; // Writes, feeds the replication log
     public static final String QUEUE_PREFIX = "replica_queue_";
 
     // Message types (using spaces for consistency)
@@ -17,11 +18,15 @@ public class AppConfig {
     // New status message types
     public static final String MSG_STATUS_CHECK = "STATUS";
     public static final String MSG_HEARTBEAT = "HEARTBEAT";
+    public static final String MSG_SEARCH_PREFIX = "SEARCH ";  // SEARCH [offset=<n>] [limit=<n>] <terms>
 
-    // Timeouts (in milliseconds)
-    public static final long REPLICA_RESPONSE_TIMEOUT = 2000;  // Wait 2 seconds for replica responses
-    public static final long RESPONSE_CHECK_INTERVAL = 100;    // Check for new responses every 100ms
-    public static final long HEARTBEAT_INTERVAL = 5000;        // Send heartbeat every 5 seconds
+    // Timeouts (in milliseconds). Request deadlines adapt to each replica's observed latency
+    // (SRTT + 4 * RTTVAR, as TCP does) and are clamped to this range
+    public static final long REPLICA_RESPONSE_TIMEOUT = 2000;  // Upper bound, also used before any latency is known
+    public static final long MIN_RESPONSE_TIMEOUT = 50;        // Lower bound for a healthy, fast replica
+    public static final double RTT_ALPHA = 0.125;              // Weight of a new sample in the smoothed latency
+    public static final double RTT_BETA = 0.25;                // Weight of a new sample in the latency deviation
+    public static final long HEARTBEAT_INTERVAL = 1000;        // Send heartbeat every second
 
     // Connection parameters
     public static final int CONNECTION_RETRY_COUNT = 3;        // Number of connection retry attempts
@@ -29,4 +34,72 @@ public class AppConfig {
 
     // Message processing
     public static final int MAX_PREFETCH_COUNT = 10;           // Maximum number of unacknowledged messages
+
+    // Replication log (stream queue every write is recorded in, replicas rewind from it on recovery)
+    public static final String REPLICATION_LOG_QUEUE = "replication_log";
+    public static final String REPLICATION_LOG_MAX_AGE = "7D"; // Retention of the log
+    public static final String HEADER_HLC = "x-hlc";         // Hybrid logical clock timestamp assigned at publish
+    public static final int REPLAY_PREFETCH_COUNT = 1000;      // Unacknowledged log entries in flight while replaying
+    public static final int REPLAY_BATCH_SIZE = 500;           // Log entries applied per DB transaction while replaying
+    public static final long REPLAY_FLUSH_INTERVAL = 50;       // Flush a partial replay batch after 50ms
+    public static final long CAUGHT_UP_LAG_THRESHOLD = 1000;   // A replica less than 1 second behind is caught up
+
+    // Read lane (each replica's queue carries reads only, writes arrive through the replication log)
+    public static final int READ_PREFETCH_COUNT = 32;          // Reads in flight per replica
+    public static final int READ_LANE_THREADS = 4;             // Threads serving reads per replica
+    public static final long READ_LATENCY_SLO = 100;           // Target time from a read's publish to its reply
+
+    // Failed writes: retried through per-attempt delay queues, then parked in a dead-letter queue
+    public static final String RETRY_QUEUE_PREFIX = "replica_retry_";        // replica_retry_<id>_<attempt>
+    public static final String REDRIVE_QUEUE_PREFIX = "replica_redrive_";    // Expired retries land here
+    public static final String DEAD_LETTER_QUEUE_PREFIX = "replica_dlq_";
+    public static final int RETRY_MAX_ATTEMPTS = 5;            // Attempts after the first failure before dead-lettering
+    public static final long RETRY_BASE_DELAY = 1000;          // First retry after 1s, doubling with every attempt
+    public static final String HEADER_ATTEMPT = "x-attempt";
+    public static final String HEADER_ERROR = "x-error";
+
+    // Write deduplication: writers stamp each write with a unique ID (the AMQP message ID) and
+    // replicas drop IDs they have already applied within the window
+    public static final long DEDUP_WINDOW = 10 * 60 * 1000;   // Each Bloom filter generation covers 10 minutes
+    public static final int DEDUP_BLOOM_BITS = 1 << 21;       // Bits per generation (256 KB)
+    public static final int DEDUP_BLOOM_HASHES = 7;           // ~1% false positives at 200k writes per window
+    public static final int DEDUP_LRU_SIZE = 4096;            // Most recent write IDs kept exactly
+
+    // Write pipeline (clients publish writes on a confirm channel without waiting on the UI thread)
+    public static final int WRITE_WINDOW = 256;                // Unconfirmed writes a client keeps in flight
+
+    // Read routing (reads go to a single replica's queue instead of the fanout exchange)
+    public static final String HEADER_REPLICA_ID = "x-replica-id";
+    public static final int REPLICA_SUSPECT_TIMEOUTS = 3;      // Consecutive read timeouts before a replica is skipped
+    public static final long REPLICA_SUSPECT_COOLDOWN = 5000;  // How long a suspect replica is skipped
+
+    // Membership (replicas heartbeat on their own exchange, clients run a phi-accrual failure detector)
+    public static final String HEARTBEAT_EXCHANGE = "replica_heartbeat";
+    public static final double PHI_THRESHOLD = 8.0;            // Phi above which a replica is considered down
+    public static final int PHI_SAMPLE_WINDOW = 100;           // Heartbeat intervals kept per replica
+
+    // Hedged reads (a second replica is asked when the first has not answered by the observed p95)
+    public static final double HEDGE_PERCENTILE = 0.95;
+    public static final int HEDGE_SAMPLE_WINDOW = 256;         // Recent read latencies the percentile is taken over
+    public static final int HEDGE_MIN_SAMPLES = 20;            // Below this, HEDGE_DEFAULT_DELAY is used
+    public static final long HEDGE_DEFAULT_DELAY = 100;
+    public static final long HEDGE_MIN_DELAY = 2;
+
+    // Metrics (Prometheus text at http://localhost:<port>/metrics, plus JMX)
+    public static final int METRICS_REPLICA_BASE_PORT = 9400;  // Replica <id> listens on 9400 + id
+    public static final int METRICS_CLIENT_PORT = 9399;        // Clients fall back to a free port when taken
+
+    // Tracing (hop timestamps in wall-clock microseconds, carried in headers and echoed in replies)
+    public static final String HEADER_TRACE_SENT = "x-trace-sent";         // Requester published
+    public static final String HEADER_TRACE_RECEIVED = "x-trace-received"; // Replica started serving
+    public static final String HEADER_TRACE_DB_START = "x-trace-db-start";
+    public static final String HEADER_TRACE_DB_END = "x-trace-db-end";
+    public static final String HEADER_TRACE_REPLIED = "x-trace-replied";   // Replica published the reply
+    public static final String HEADER_TRACE_COMMAND = "x-trace-command";
+    public static final long TRACE_SLOW_THRESHOLD = 100;       // Traces slower than this (ms) are kept and ranked
+    public static final int TRACE_SLOW_KEEP = 256;             // Slow traces kept per process
+
+    // Full-text search (each replica keeps an inverted index over the newest version of every line)
+    public static final int SEARCH_DEFAULT_LIMIT = 20;         // Results per page unless the request asks otherwise
+    public static final int SEARCH_MAX_LIMIT = 200;            // Largest page a replica will send
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package database;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+
+/**
+ * Raised when a write could not be stored. Transient failures (lost connection, lock wait
+ * timeout, deadlock) are worth retrying as they are; anything else points at the write itself.
+ */
+public class RepositoryException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final boolean transientFailure;
+
+    public RepositoryException(String message, SQLException cause) {
+        super(message + ": " + cause.getMessage(), cause);
+        this.transientFailure = isTransient(cause);
+    }
+
+    public boolean isTransient() {
+        return transientFailure;
+    }
+
+    private static boolean isTransient(SQLException e) {
+        String state = e.getSQLState();
+        return e instanceof SQLTransientException
+                || (state != null && (state.startsWith("08") || state.startsWith("40")))
+                || e.getErrorCode() == 1205   // Lock wait timeout
+                || e.getErrorCode() == 1213;  // Deadlock
+    }
+}
@@ -2,9 +2,17 @@ package database;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class TextRepository {
+
+    // Receives rows one at a time from forEachLine
+    public interface LineVisitor {
+        void visit(int lineNumber, String content, long timestamp);
+    }
+
     private final int replicaId;
     private final String dbName;
     private final String baseUrl = "jdbc:mysql://localhost:3306/";
@@ -38,9 +46,28 @@ public class TextRepository {
             )
         """;
 
+        // Single row holding the replication log offset of the last applied write
+        String createStateTableSQL = """
+            CREATE TABLE IF NOT EXISTS replication_state (
+                id INT PRIMARY KEY,
+                last_applied_offset BIGINT NOT NULL
+            )
+        """;
+
+        // IDs of the writes applied recently, so a duplicate delivery of the same write is not applied twice
+        String createAppliedWritesSQL = """
+            CREATE TABLE IF NOT EXISTS applied_writes (
+                write_id VARCHAR(64) PRIMARY KEY,
+                applied_at BIGINT NOT NULL,
+                INDEX idx_applied_at (applied_at)
+            )
+        """;
+
         try (Connection conn = DriverManager.getConnection(url, user, password);
              Statement stmt = conn.createStatement()) {
             stmt.executeUpdate(createTableSQL);
+            stmt.executeUpdate(createStateTableSQL);
+            stmt.executeUpdate(createAppliedWritesSQL);
             
             // Check if timestamp column exists
             ResultSet columns = conn.getMetaData().getColumns(null, null, "text_lines", "timestamp");
@@ -56,26 +83,213 @@ public class TextRepository {
     }
 
     private Connection connect() throws SQLException {
-        String url = baseUrl + dbName + "?useSSL=false&serverTimezone=UTC";
+        // rewriteBatchedStatements turns a replay batch into multi-row INSERTs
+        String url = baseUrl + dbName + "?useSSL=false&serverTimezone=UTC&rewriteBatchedStatements=true";
         return DriverManager.getConnection(url, user, password);
     }
 
-    public void insertLine(int lineNumber, String content) {
-        String sql = "INSERT INTO text_lines (line_number, content, timestamp) VALUES (?, ?, ?)";
+    private static final String INSERT_LINE_SQL = "INSERT INTO text_lines (line_number, content, timestamp) VALUES (?, ?, ?)";
+    private static final String INSERT_WRITE_ID_SQL = "INSERT IGNORE INTO applied_writes (write_id, applied_at) VALUES (?, ?)";
+    private static final String UPDATE_OFFSET_SQL = "INSERT INTO replication_state (id, last_applied_offset) VALUES (1, ?) " +
+            "ON DUPLICATE KEY UPDATE last_applied_offset = VALUES(last_applied_offset)";
+
+    // The timestamp is the writer's hybrid logical clock value and is stored verbatim
+    public void insertLine(int lineNumber, String content, long timestamp) throws RepositoryException {
         try (Connection conn = connect();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+             PreparedStatement stmt = conn.prepareStatement(INSERT_LINE_SQL)) {
             stmt.setInt(1, lineNumber);
             stmt.setString(2, content);
-            stmt.setLong(3, System.currentTimeMillis());
+            stmt.setLong(3, timestamp);
             stmt.executeUpdate();
         } catch (SQLException e) {
-            e.printStackTrace();
+            throw new RepositoryException("Failed to insert line " + lineNumber, e);
+        }
+    }
+
+    // Inserts a batch of replicated lines and records the log offset in the same transaction,
+    // so a replica that crashes mid-replay resumes exactly after the last committed entry.
+    // writeIds is parallel to entries (null for writes without an ID); the IDs are recorded
+    // in that transaction too
+    public void applyLogEntries(List<TextEntity> entries, List<String> writeIds, long lastOffset) throws RepositoryException {
+        try (Connection conn = connect()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement insert = conn.prepareStatement(INSERT_LINE_SQL);
+                 PreparedStatement writeId = conn.prepareStatement(INSERT_WRITE_ID_SQL);
+                 PreparedStatement offset = conn.prepareStatement(UPDATE_OFFSET_SQL)) {
+                long now = System.currentTimeMillis();
+                boolean hasWriteIds = false;
+                for (int i = 0; i < entries.size(); i++) {
+                    TextEntity entry = entries.get(i);
+                    insert.setInt(1, entry.getLineNumber());
+                    insert.setString(2, entry.getContent());
+                    insert.setLong(3, entry.getTimestamp());
+                    insert.addBatch();
+
+                    if (writeIds.get(i) != null) {
+                        writeId.setString(1, writeIds.get(i));
+                        writeId.setLong(2, now);
+                        writeId.addBatch();
+                        hasWriteIds = true;
+                    }
+                }
+                insert.executeBatch();
+                if (hasWriteIds) {
+                    writeId.executeBatch();
+                }
+
+                offset.setLong(1, lastOffset);
+                offset.executeUpdate();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RepositoryException("Failed to apply " + entries.size() + " log entries up to offset " + lastOffset, e);
+        }
+    }
+
+    // Moves the stored offset past log entries that applied no rows
+    public void storeLastAppliedOffset(long lastOffset) throws RepositoryException {
+        try (Connection conn = connect();
+             PreparedStatement offset = conn.prepareStatement(UPDATE_OFFSET_SQL)) {
+            offset.setLong(1, lastOffset);
+            offset.executeUpdate();
+        } catch (SQLException e) {
+            throw new RepositoryException("Failed to store log offset " + lastOffset, e);
+        }
+    }
+
+    // Same as applyLogEntries, but every entry gets its own savepoint: the entries the database
+    // rejects are rolled back on their own and returned by index, the rest and the offset commit
+    public Map<Integer, RepositoryException> applyLogEntriesIsolated(List<TextEntity> entries, List<String> writeIds,
+                                                                    long lastOffset) throws RepositoryException {
+        Map<Integer, RepositoryException> failures = new LinkedHashMap<>();
+        try (Connection conn = connect()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement insert = conn.prepareStatement(INSERT_LINE_SQL);
+                 PreparedStatement writeId = conn.prepareStatement(INSERT_WRITE_ID_SQL);
+                 PreparedStatement offset = conn.prepareStatement(UPDATE_OFFSET_SQL)) {
+                long now = System.currentTimeMillis();
+                for (int i = 0; i < entries.size(); i++) {
+                    Savepoint savepoint = conn.setSavepoint();
+                    try {
+                        insertEntry(insert, writeId, entries.get(i), writeIds.get(i), now);
+                        conn.releaseSavepoint(savepoint);
+                    } catch (SQLException e) {
+                        conn.rollback(savepoint);
+                        failures.put(i, new RepositoryException("Failed to apply line " + entries.get(i).getLineNumber(), e));
+                    }
+                }
+
+                offset.setLong(1, lastOffset);
+                offset.executeUpdate();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RepositoryException("Failed to apply " + entries.size() + " log entries up to offset " + lastOffset, e);
+        }
+        return failures;
+    }
+
+    // Applies a single write outside the log order (a retried write); the log offset is untouched
+    public void applyWrite(TextEntity entry, String writeId) throws RepositoryException {
+        try (Connection conn = connect()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement insert = conn.prepareStatement(INSERT_LINE_SQL);
+                 PreparedStatement writeIdStmt = conn.prepareStatement(INSERT_WRITE_ID_SQL)) {
+                insertEntry(insert, writeIdStmt, entry, writeId, System.currentTimeMillis());
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new RepositoryException("Failed to apply line " + entry.getLineNumber(), e);
+        }
+    }
+
+    private void insertEntry(PreparedStatement insert, PreparedStatement writeId, TextEntity entry,
+                             String id, long appliedAt) throws SQLException {
+        insert.setInt(1, entry.getLineNumber());
+        insert.setString(2, entry.getContent());
+        insert.setLong(3, entry.getTimestamp());
+        insert.executeUpdate();
+
+        if (id != null) {
+            writeId.setString(1, id);
+            writeId.setLong(2, appliedAt);
+            writeId.executeUpdate();
+        }
+    }
+
+    // -1 only when nothing was ever applied; a failed query throws rather than look like an empty replica
+    public long getLastAppliedOffset() throws RepositoryException {
+        String sql = "SELECT last_applied_offset FROM replication_state WHERE id = 1";
+        try (Connection conn = connect();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+
+            if (rs.next()) {
+                return rs.getLong("last_applied_offset");
+            }
+            return -1;
+        } catch (SQLException e) {
+            throw new RepositoryException("Failed to read the last applied log offset", e);
+        }
+    }
+
+    // Throws rather than answer "not applied" when unsure, since the caller would insert the write again
+    public boolean isWriteApplied(String writeId) throws RepositoryException {
+        String sql = "SELECT 1 FROM applied_writes WHERE write_id = ?";
+        try (Connection conn = connect();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, writeId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            throw new RepositoryException("Failed to check whether write " + writeId + " was applied", e);
+        }
+    }
+
+    // Write IDs applied since the given time, used to warm the in-memory dedup filter on startup;
+    // throws rather than return a partial list the filter would then trust
+    public List<String> getWriteIdsAppliedSince(long since) throws RepositoryException {
+        List<String> ids = new ArrayList<>();
+        String sql = "SELECT write_id FROM applied_writes WHERE applied_at >= ? ORDER BY applied_at";
+        try (Connection conn = connect();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setLong(1, since);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getString("write_id"));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RepositoryException("Failed to load write IDs applied since " + since, e);
+        }
+        return ids;
+    }
+
+    public void pruneAppliedWrites(long before) throws RepositoryException {
+        String sql = "DELETE FROM applied_writes WHERE applied_at < ?";
+        try (Connection conn = connect();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setLong(1, before);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new RepositoryException("Failed to prune write IDs applied before " + before, e);
         }
     }
 
     public TextEntity getLastLine() {
         // Note that we're explicitly selecting all required fields including timestamp
-        String sql = "SELECT line_number, content, timestamp FROM text_lines ORDER BY line_number DESC LIMIT 1";
+        // Ties on the line number go to the newest write, which is the same row on every replica
+        String sql = "SELECT line_number, content, timestamp FROM text_lines ORDER BY line_number DESC, timestamp DESC LIMIT 1";
         try (Connection conn = connect();
              PreparedStatement stmt = conn.prepareStatement(sql);
              ResultSet rs = stmt.executeQuery()) {
@@ -96,7 +310,7 @@ public class TextRepository {
 
     public List<TextEntity> getAllLines() {
         List<TextEntity> list = new ArrayList<>();
-        String sql = "SELECT line_number, content, timestamp FROM text_lines ORDER BY line_number";
+        String sql = "SELECT line_number, content, timestamp FROM text_lines ORDER BY line_number, timestamp";
 
         try (Connection conn = connect();
              PreparedStatement stmt = conn.prepareStatement(sql);
@@ -115,4 +329,27 @@ public class TextRepository {
         }
         return list;
     }
+
+    // Same rows and order as getAllLines, handed to the visitor as they come off the wire
+    // instead of being collected first. Returns the number of rows visited.
+    public int forEachLine(LineVisitor visitor) {
+        String sql = "SELECT line_number, content, timestamp FROM text_lines ORDER BY line_number, timestamp";
+        int count = 0;
+
+        try (Connection conn = connect();
+             PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // Makes MySQL Connector/J stream the rows rather than buffer the whole result
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    visitor.visit(rs.getInt(1), rs.getString(2), rs.getLong(3));
+                    count++;
+                }
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return count;
+    }
 }
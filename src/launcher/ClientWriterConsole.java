@@ -1,10 +1,13 @@
 package launcher;
 
+import config.AppConfig;
 import messaging.RabbitMQManager;
+import metrics.MetricsExporter;
 import org.json.JSONObject;
 
 public class ClientWriterConsole {
     public static void main(String[] args) throws Exception {
+        MetricsExporter.start(AppConfig.METRICS_CLIENT_PORT);
         RabbitMQManager rmq = new RabbitMQManager();
 
         JSONObject msg1 = new JSONObject();
@@ -0,0 +1,30 @@
+package launcher;
+
+import messaging.RabbitMQManager;
+import messaging.RetryPipeline;
+
+public class DeadLetterConsole {
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2 || !(args[0].equals("status") || args[0].equals("redrive"))) {
+            System.err.println("Usage: java DeadLetterConsole <status|redrive> <replicaId>...");
+            return;
+        }
+
+        RabbitMQManager rmq = new RabbitMQManager();
+        for (int i = 1; i < args.length; i++) {
+            int replicaId = Integer.parseInt(args[i]);
+            RetryPipeline pipeline = new RetryPipeline(rmq, replicaId);
+            pipeline.declare();
+
+            if (args[0].equals("redrive")) {
+                // The replica applies them again with a fresh set of retry attempts
+                int moved = pipeline.redriveDeadLetters();
+                System.out.println("🔁 Replica " + replicaId + ": re-drove " + moved + " dead-lettered write(s)");
+            } else {
+                System.out.println("📬 Replica " + replicaId + ": " + pipeline.getDeadLetterCount() + " dead-lettered write(s)");
+            }
+            pipeline.close();
+        }
+        rmq.close();
+    }
+}
@@ -1,14 +1,21 @@
 package launcher;
 
+import main.Replica;
 import ui.ReplicaFX;
 
 public class ReplicaLauncher {
     public static void main(String[] args) {
         if (args.length < 1) {
-            System.err.println("Usage: java ReplicaLauncher <replicaId>");
+            System.err.println("Usage: java ReplicaLauncher <replicaId> [--headless]");
             System.exit(1);
         }
 
+        // Server replicas skip JavaFX entirely
+        if (args.length > 1 && args[1].equals("--headless")) {
+            Replica.main(new String[]{args[0]});
+            return;
+        }
+
         int id = Integer.parseInt(args[0]);
         ReplicaFX.launchReplica(id);
     }
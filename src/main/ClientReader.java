@@ -1,73 +1,63 @@
 package main;
 
 import config.AppConfig;
+import messaging.CommandCodec;
 import messaging.RabbitMQManager;
+import metrics.MetricsExporter;
 import utils.LoggerUtil;
+import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
+// Usage: ClientReader                     prints the most recent line
+//        ClientReader search <terms...>  prints the best matching lines
 public class ClientReader {
     public static void main(String[] args) {
         try {
+            MetricsExporter.start(AppConfig.METRICS_CLIENT_PORT);
             RabbitMQManager manager = new RabbitMQManager();
-            CompletableFuture<String> future = manager.publishWithResponse(AppConfig.MSG_READ_LAST);
+
+            // Give running replicas a chance to heartbeat so the read goes to a live one
+            manager.startMembership().awaitMembers(2 * AppConfig.HEARTBEAT_INTERVAL);
+            if (args.length > 1 && args[0].equalsIgnoreCase("search")) {
+                search(manager, String.join(" ", Arrays.copyOfRange(args, 1, args.length)));
+                manager.close();
+                return;
+            }
+            CompletableFuture<String> future = manager.publishRead(AppConfig.MSG_READ_LAST);
             
             System.out.println("Waiting for replica responses...");
             
-            // Process responses for the configured timeout period
-            long startTime = System.currentTimeMillis();
-            long elapsedTime = 0;
+            // The future completes with the replica's reply, or with null once every replica
+            // it was sent to has missed its adaptive deadline
+            String response = future.join();
             JSONObject mostRecent = null;
-            long mostRecentTimestamp = 0;
             int successCount = 0;
             int errorCount = 0;
-            
-            while (elapsedTime < AppConfig.REPLICA_RESPONSE_TIMEOUT) {
-                try {
-                    String response = future.get(AppConfig.RESPONSE_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
-                    if (response != null) {
-                        JSONObject json = new JSONObject(response);
-                        
-                        // Handle error responses
-                        if (json.has("error")) {
-                            errorCount++;
-                            System.out.printf("❌ Error from Replica %d: %s%n", 
-                                json.getInt("replicaId"), 
-                                json.getString("error"));
-                            continue;
-                        }
-                        
-                        // Skip empty responses but count them
-                        if (json.optBoolean("empty", false)) {
-                            successCount++;
-                            System.out.printf("ℹ️ Replica %d: No data available%n", 
-                                json.getInt("replicaId"));
-                            continue;
-                        }
-                        
-                        successCount++;
-                        // Make sure all required fields are present
-                        if (json.has("timestamp") && json.has("lineNumber") && json.has("content")) {
-                            long timestamp = json.getLong("timestamp");
-                            if (timestamp > mostRecentTimestamp) {
-                                mostRecentTimestamp = timestamp;
-                                mostRecent = json;
-                            }
-                        }
+
+            if (response != null) {
+                JSONObject json = new JSONObject(response);
+
+                if (json.has("error")) {
+                    // Handle error responses
+                    errorCount++;
+                    System.out.printf("❌ Error from Replica %d: %s%n", 
+                        json.getInt("replicaId"), 
+                        json.getString("error"));
+                } else if (json.optBoolean("empty", false)) {
+                    // Empty responses still count as answered
+                    successCount++;
+                    System.out.printf("ℹ️ Replica %d: No data available%n", 
+                        json.getInt("replicaId"));
+                } else {
+                    successCount++;
+                    // Make sure all required fields are present
+                    if (json.has("timestamp") && json.has("lineNumber") && json.has("content")) {
+                        mostRecent = json;
                     }
-                } catch (TimeoutException e) {
-                    // This is expected, continue checking
-                }
-                
-                elapsedTime = System.currentTimeMillis() - startTime;
-                
-                // Early completion if we have enough responses
-                if (successCount + errorCount >= 2) { // Assuming at least 2 replicas
-                    break;
                 }
             }
             
@@ -82,8 +72,7 @@ public class ClientReader {
                 if (errorCount > 0) {
                     System.out.println("No valid responses received. " + errorCount + " replica(s) reported errors.");
                 } else {
-                    System.out.println("No responses received from any replicas after " + 
-                        (AppConfig.REPLICA_RESPONSE_TIMEOUT / 1000.0) + " seconds");
+                    System.out.println("No responses received from any replicas");
                 }
             }
             
@@ -92,4 +81,26 @@ public class ClientReader {
             LoggerUtil.error("ClientReader failed", e);
         }
     }
+
+    // Only the first page of matching lines comes back, not the whole document
+    private static void search(RabbitMQManager manager, String terms) throws IOException {
+        String response = manager.publishRead(CommandCodec.searchCommand(terms, 0, AppConfig.SEARCH_DEFAULT_LIMIT)).join();
+        if (response == null) {
+            System.out.println("No responses received from any replicas");
+            return;
+        }
+
+        JSONObject json = new JSONObject(response);
+        if (json.has("error")) {
+            System.out.printf("❌ Error from Replica %d: %s%n", json.getInt("replicaId"), json.getString("error"));
+            return;
+        }
+
+        JSONArray results = json.getJSONArray("results");
+        System.out.printf("%d line(s) match \"%s\" on replica %d%n", json.getInt("total"), terms, json.getInt("replicaId"));
+        for (int i = 0; i < results.length(); i++) {
+            JSONObject hit = results.getJSONObject(i);
+            System.out.printf("  Line %d (%.2f): %s%n", hit.getInt("lineNumber"), hit.getDouble("score"), hit.getString("content"));
+        }
+    }
 }
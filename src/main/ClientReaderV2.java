@@ -2,6 +2,7 @@ package main;
 
 import config.AppConfig;
 import messaging.RabbitMQManager;
+import metrics.MetricsExporter;
 import utils.LoggerUtil;
 
 import java.io.IOException;
@@ -10,6 +11,7 @@ import java.util.concurrent.TimeoutException;
 public class ClientReaderV2 {
     public static void main(String[] args) {
         try {
+            MetricsExporter.start(AppConfig.METRICS_CLIENT_PORT);
             RabbitMQManager manager = new RabbitMQManager();
             manager.publish(AppConfig.MSG_READ_ALL);
             manager.close();
@@ -1,6 +1,8 @@
 package main;
 
+import config.AppConfig;
 import messaging.RabbitMQManager;
+import metrics.MetricsExporter;
 import utils.LoggerUtil;
 
 import java.io.IOException;
@@ -10,6 +12,7 @@ import java.util.concurrent.TimeoutException;
 public class ClientWriter {
     public static void main(String[] args) {
         try {
+            MetricsExporter.start(AppConfig.METRICS_CLIENT_PORT);
             RabbitMQManager manager = new RabbitMQManager();
             Scanner scanner = new Scanner(System.in);
 
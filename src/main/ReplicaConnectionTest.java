@@ -6,9 +6,8 @@ import utils.LoggerUtil;
 import org.json.JSONObject;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 /**
@@ -24,35 +23,25 @@ public class ReplicaConnectionTest {
             RabbitMQManager manager = new RabbitMQManager();
             LoggerUtil.log("Connected to RabbitMQ server");
 
+            // Learn how many replicas are alive so we know when everyone has answered
+            manager.startMembership().awaitMembers(2 * AppConfig.HEARTBEAT_INTERVAL);
+
             // Send a status check message
             LoggerUtil.log("Sending status check to all replicas...");
-            CompletableFuture<String> future = manager.publishWithResponse(AppConfig.MSG_STATUS_CHECK);
+            CompletableFuture<List<String>> future = manager.publishToAll(AppConfig.MSG_STATUS_CHECK, response -> {
+                JSONObject responseJson = new JSONObject(response);
+                LoggerUtil.log("✅ Received response from Replica " + responseJson.getInt("replicaId"));
+                LoggerUtil.log("Status: " + responseJson.getString("status"));
+                LoggerUtil.log("Queue: " + responseJson.getString("queueName"));
+                LoggerUtil.log("Lines: " + responseJson.getInt("lineCount"));
+            });
 
             // Wait for responses
             LoggerUtil.log("Waiting for responses...");
-            boolean receivedResponse = false;
-            long startTime = System.currentTimeMillis();
-
-            while (System.currentTimeMillis() - startTime < 5000) { // Wait up to 5 seconds
-                try {
-                    String response = future.get(100, TimeUnit.MILLISECONDS);
-                    if (response != null) {
-                        receivedResponse = true;
-                        JSONObject responseJson = new JSONObject(response);
-                        LoggerUtil.log("✅ Received response from Replica " + responseJson.getInt("replicaId"));
-                        LoggerUtil.log("Status: " + responseJson.getString("status"));
-                        LoggerUtil.log("Queue: " + responseJson.getString("queueName"));
-                        LoggerUtil.log("Lines: " + responseJson.getInt("lineCount"));
-                    }
-                } catch (TimeoutException e) {
-                    // This is expected when waiting for responses
-                } catch (ExecutionException e) {
-                    throw new RuntimeException(e);
-                }
-            }
+            boolean receivedResponse = !future.join().isEmpty();
 
             if (!receivedResponse) {
-                LoggerUtil.log("❌ No responses received within 5 seconds.");
+                LoggerUtil.log("❌ No responses received.");
                 LoggerUtil.log("Possible issues:");
                 LoggerUtil.log("1. No replicas are running");
                 LoggerUtil.log("2. RabbitMQ exchange or queue binding is misconfigured");
@@ -0,0 +1,74 @@
+package messaging;
+
+import metrics.MetricsRegistry;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters kept by a client's RabbitMQManager about its routed reads and how often hedging
+ * (asking a second replica when the first is slow) kicked in and paid off. The counts are also
+ * exported as process-wide counters, summed over every manager in the process.
+ */
+public class ClientMetrics {
+    private static final LongAdder readsTotal = MetricsRegistry.shared().counter("client_routed_reads_total",
+            "Reads sent to a single replica");
+    private static final LongAdder hedgesSentTotal = MetricsRegistry.shared().counter("client_hedges_sent_total",
+            "Routed reads that were hedged to a second replica");
+    private static final LongAdder hedgeWinsTotal = MetricsRegistry.shared().counter("client_hedge_wins_total",
+            "Hedged reads answered first by the hedge");
+
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong hedgesSent = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong latencySavedMillis = new AtomicLong();
+
+    void recordRead() {
+        reads.incrementAndGet();
+        readsTotal.increment();
+    }
+
+    void recordHedge() {
+        hedgesSent.incrementAndGet();
+        hedgesSentTotal.increment();
+    }
+
+    void recordHedgeWin() {
+        hedgeWins.incrementAndGet();
+        hedgeWinsTotal.increment();
+    }
+
+    void recordLatencySaved(long millis) {
+        if (millis > 0) {
+            latencySavedMillis.addAndGet(millis);
+        }
+    }
+
+    public long getReads() {
+        return reads.get();
+    }
+
+    public long getHedgesSent() {
+        return hedgesSent.get();
+    }
+
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    public long getLatencySavedMillis() {
+        return latencySavedMillis.get();
+    }
+
+    // Fraction of reads that needed a hedge
+    public double getHedgeRate() {
+        long total = reads.get();
+        return total == 0 ? 0 : (double) hedgesSent.get() / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("reads=%d, hedged=%d (%.1f%%), hedge wins=%d, latency saved=%d ms",
+                getReads(), getHedgesSent(), getHedgeRate() * 100, getHedgeWins(), getLatencySavedMillis());
+    }
+}
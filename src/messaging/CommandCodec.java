@@ -0,0 +1,171 @@
+package messaging;
+
+import config.AppConfig;
+import database.TextEntity;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads replica commands straight from the message bytes. The opcode is picked with a switch
+ * on the first byte and a range compare against the command's bytes, and the line number of a
+ * WRITE is parsed in place, so classifying a message allocates nothing and only a write's
+ * content is ever turned into a String.
+ */
+public final class CommandCodec {
+
+    public enum Opcode {
+        READ_LAST,
+        READ_ALL,
+        READ_ALL_JSON,
+        STATUS,
+        SEARCH,
+        WRITE,
+        WRITE_JSON,
+        UNKNOWN
+    }
+
+    private static final byte[] READ_LAST = AppConfig.MSG_READ_LAST.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] READ_ALL = AppConfig.MSG_READ_ALL.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] READ_ALL_JSON = (AppConfig.MSG_READ_ALL + "_JSON").getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] STATUS = AppConfig.MSG_STATUS_CHECK.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] WRITE_PREFIX = AppConfig.MSG_WRITE_PREFIX.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SEARCH_PREFIX = AppConfig.MSG_SEARCH_PREFIX.getBytes(StandardCharsets.US_ASCII);
+
+    // A SEARCH command: the terms, and which page of the ranked results to send
+    public static final class SearchRequest {
+        private final String terms;
+        private final int offset;
+        private final int limit;
+
+        SearchRequest(String terms, int offset, int limit) {
+            this.terms = terms;
+            this.offset = offset;
+            this.limit = limit;
+        }
+
+        public String getTerms() { return terms; }
+        public int getOffset() { return offset; }
+        public int getLimit() { return limit; }
+    }
+
+    private CommandCodec() {
+    }
+
+    public static Opcode opcodeOf(byte[] body) {
+        if (body.length == 0) return Opcode.UNKNOWN;
+
+        switch (body[0]) {
+            case 'R':
+                if (Arrays.equals(body, READ_LAST)) return Opcode.READ_LAST;
+                if (Arrays.equals(body, READ_ALL)) return Opcode.READ_ALL;
+                if (Arrays.equals(body, READ_ALL_JSON)) return Opcode.READ_ALL_JSON;
+                return Opcode.UNKNOWN;
+            case 'S':
+                if (Arrays.equals(body, STATUS)) return Opcode.STATUS;
+                return startsWith(body, SEARCH_PREFIX) ? Opcode.SEARCH : Opcode.UNKNOWN;
+            case 'W':
+                return startsWith(body, WRITE_PREFIX) ? Opcode.WRITE : Opcode.UNKNOWN;
+            case '{':
+                return Opcode.WRITE_JSON;
+            default:
+                return Opcode.UNKNOWN;
+        }
+    }
+
+    public static boolean isWrite(byte[] body) {
+        Opcode opcode = opcodeOf(body);
+        return opcode == Opcode.WRITE || opcode == Opcode.WRITE_JSON;
+    }
+
+    // Returns the line carried by a write message, or null if the message is not a write
+    public static TextEntity parseWrite(byte[] body, long timestamp) {
+        switch (opcodeOf(body)) {
+            case WRITE: {
+                int space = indexOf(body, (byte) ' ', WRITE_PREFIX.length);
+                if (space < 0) {
+                    throw new IllegalArgumentException("Invalid WRITE message format. Expected: WRITE <lineNumber> <content>");
+                }
+                int lineNumber = parseInt(body, WRITE_PREFIX.length, space);
+                String content = new String(body, space + 1, body.length - space - 1, StandardCharsets.UTF_8);
+                return new TextEntity(lineNumber, content, timestamp);
+            }
+            case WRITE_JSON: {
+                JSONObject json = new JSONObject(new String(body, StandardCharsets.UTF_8));
+                if (json.has("line_number") && json.has("content")) {
+                    return new TextEntity(json.getInt("line_number"), json.getString("content"), timestamp);
+                }
+                return null;
+            }
+            default:
+                return null;
+        }
+    }
+
+    public static String searchCommand(String terms, int offset, int limit) {
+        return AppConfig.MSG_SEARCH_PREFIX + "offset=" + offset + " limit=" + limit + " " + terms;
+    }
+
+    // Leading offset=<n> and limit=<n> options are read off the front, the rest are the terms
+    public static SearchRequest parseSearch(byte[] body) {
+        if (opcodeOf(body) != Opcode.SEARCH) {
+            throw new IllegalArgumentException("Not a SEARCH message");
+        }
+        String rest = new String(body, SEARCH_PREFIX.length, body.length - SEARCH_PREFIX.length, StandardCharsets.UTF_8).trim();
+        int offset = 0;
+        int limit = AppConfig.SEARCH_DEFAULT_LIMIT;
+        while (rest.startsWith("offset=") || rest.startsWith("limit=")) {
+            int end = rest.indexOf(' ');
+            String option = end < 0 ? rest : rest.substring(0, end);
+            int value = Integer.parseInt(option.substring(option.indexOf('=') + 1));
+            if (option.startsWith("offset=")) {
+                offset = Math.max(0, value);
+            } else {
+                limit = Math.max(1, Math.min(AppConfig.SEARCH_MAX_LIMIT, value));
+            }
+            rest = end < 0 ? "" : rest.substring(end + 1).trim();
+        }
+        if (rest.isEmpty()) {
+            throw new IllegalArgumentException("Invalid SEARCH message format. Expected: SEARCH [offset=<n>] [limit=<n>] <terms>");
+        }
+        return new SearchRequest(rest, offset, limit);
+    }
+
+    // Integer.parseInt over body[from, to) without building the substring
+    public static int parseInt(byte[] body, int from, int to) {
+        if (from >= to) {
+            throw new NumberFormatException("Missing line number");
+        }
+
+        boolean negative = body[from] == '-';
+        int i = negative || body[from] == '+' ? from + 1 : from;
+        if (i == to) {
+            throw new NumberFormatException("Invalid line number");
+        }
+
+        // Accumulate negatively so Integer.MIN_VALUE still fits
+        int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        int multiplyMin = limit / 10;
+        int result = 0;
+        for (; i < to; i++) {
+            int digit = body[i] - '0';
+            if (digit < 0 || digit > 9 || result < multiplyMin || result * 10 < limit + digit) {
+                throw new NumberFormatException("Invalid line number: " + new String(body, from, to - from, StandardCharsets.UTF_8));
+            }
+            result = result * 10 - digit;
+        }
+        return negative ? result : -result;
+    }
+
+    private static boolean startsWith(byte[] body, byte[] prefix) {
+        return body.length >= prefix.length && Arrays.equals(body, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    private static int indexOf(byte[] body, byte value, int from) {
+        for (int i = from; i < body.length; i++) {
+            if (body[i] == value) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,117 @@
+package messaging;
+
+import config.AppConfig;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers which write IDs a replica has applied, in bounded memory.
+ *
+ * A time-windowed Bloom filter (two generations, the older one dropped every
+ * {@link AppConfig#DEDUP_WINDOW}) answers "definitely new" for almost every write, so the
+ * common case costs a few bit lookups. When the filter says "maybe seen", a small exact LRU of
+ * the most recent IDs settles it; only if that misses too (a false positive, or an older
+ * duplicate) does the caller need to ask the database.
+ */
+public class DedupFilter {
+
+    public enum Result {
+        NEW,        // Never seen within the window
+        DUPLICATE,  // Known to be applied already
+        UNCERTAIN   // The Bloom filter matched but the LRU does not hold the ID
+    }
+
+    private final int bits;
+    private final int hashes;
+    private final long windowMillis;
+    private final Map<String, Boolean> recent;
+    private BitSet current;
+    private BitSet previous;
+    private long rotatedAt;
+
+    public DedupFilter() {
+        this(AppConfig.DEDUP_BLOOM_BITS, AppConfig.DEDUP_BLOOM_HASHES, AppConfig.DEDUP_LRU_SIZE, AppConfig.DEDUP_WINDOW);
+    }
+
+    public DedupFilter(int bits, int hashes, int lruSize, long windowMillis) {
+        this.bits = bits;
+        this.hashes = hashes;
+        this.windowMillis = windowMillis;
+        this.recent = new LinkedHashMap<>(lruSize * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > lruSize;
+            }
+        };
+        this.current = new BitSet(bits);
+        this.previous = new BitSet(bits);
+        this.rotatedAt = System.currentTimeMillis();
+    }
+
+    public synchronized Result check(String writeId) {
+        rotateIfDue();
+        if (recent.containsKey(writeId)) {
+            return Result.DUPLICATE;
+        }
+        return mightContain(writeId) ? Result.UNCERTAIN : Result.NEW;
+    }
+
+    // Only called once the write is committed, so a failed batch never marks its IDs as seen
+    public synchronized void add(String writeId) {
+        rotateIfDue();
+        recent.put(writeId, Boolean.TRUE);
+
+        long hash = hash(writeId);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            current.set(Math.floorMod(h1 + i * h2, bits));
+        }
+    }
+
+    private boolean mightContain(String writeId) {
+        long hash = hash(writeId);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return contains(current, h1, h2) || contains(previous, h1, h2);
+    }
+
+    private boolean contains(BitSet filter, int h1, int h2) {
+        for (int i = 0; i < hashes; i++) {
+            if (!filter.get(Math.floorMod(h1 + i * h2, bits))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rotateIfDue() {
+        long now = System.currentTimeMillis();
+        if (now - rotatedAt < windowMillis) return;
+
+        if (now - rotatedAt >= 2 * windowMillis) {
+            // Two windows without a rotation means both generations are stale
+            current.clear();
+            previous.clear();
+        } else {
+            BitSet oldest = previous;
+            previous = current;
+            oldest.clear();
+            current = oldest;
+        }
+        rotatedAt = now;
+    }
+
+    // 64-bit FNV-1a, split into the two halves used for double hashing
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        // Keep the second hash odd so the probe sequence never collapses onto one bit
+        return hash | (1L << 32);
+    }
+}
@@ -0,0 +1,86 @@
+package messaging;
+
+import config.AppConfig;
+import metrics.LatencyHistogram;
+import org.json.JSONObject;
+import utils.HybridLogicalClock;
+import utils.LoggerUtil;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes a replica's heartbeat every {@link AppConfig#HEARTBEAT_INTERVAL} on the heartbeat
+ * exchange. Besides liveness, each heartbeat carries the load figures clients route on: the
+ * depth of the replica's queue, how many writes per second it applies and the replication
+ * log offset it has applied up to. For dashboards it also reports the read latency percentiles
+ * of the last interval and how far behind the log the replica is.
+ */
+public class HeartbeatPublisher {
+    private final RabbitMQManager rmq;
+    private final int replicaId;
+    private final ReplicationLogApplier logApplier;
+    private final ReadLane readLane;
+    private final ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> task;
+    private long lastAppliedCount;
+    private long lastBeatAt;
+
+    public HeartbeatPublisher(RabbitMQManager rmq, int replicaId, ReplicationLogApplier logApplier, ReadLane readLane) {
+        this.rmq = rmq;
+        this.replicaId = replicaId;
+        this.logApplier = logApplier;
+        this.readLane = readLane;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "heartbeat-" + replicaId);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public synchronized void start() {
+        if (task != null) return;
+
+        lastAppliedCount = logApplier.getAppliedCount();
+        lastBeatAt = System.currentTimeMillis();
+        task = scheduler.scheduleAtFixedRate(this::beat, 0, AppConfig.HEARTBEAT_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    // A stopped or broken replica goes silent, which is how clients notice it is gone
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+    }
+
+    private void beat() {
+        try {
+            long now = System.currentTimeMillis();
+            long applied = logApplier.getAppliedCount();
+            double applyRate = now > lastBeatAt ? (applied - lastAppliedCount) * 1000.0 / (now - lastBeatAt) : 0;
+            lastAppliedCount = applied;
+            lastBeatAt = now;
+            LatencyHistogram reads = readLane.takeRecentLatency();
+
+            JSONObject heartbeat = new JSONObject();
+            heartbeat.put("type", AppConfig.MSG_HEARTBEAT);
+            heartbeat.put("replicaId", replicaId);
+            heartbeat.put("queueDepth", rmq.getQueueDepth(AppConfig.QUEUE_PREFIX + replicaId));
+            heartbeat.put("applyRate", applyRate);
+            heartbeat.put("lastAppliedOffset", logApplier.getLastAppliedOffset());
+            heartbeat.put("catchingUp", logApplier.isCatchingUp());
+            heartbeat.put("lagMillis", logApplier.getLagMillis());
+            heartbeat.put("readCount", reads.getCount());
+            heartbeat.put("readP50Millis", reads.quantileNanos(0.5) / 1e6);
+            heartbeat.put("readP99Millis", reads.quantileNanos(0.99) / 1e6);
+            heartbeat.put("timestamp", HybridLogicalClock.shared().now());
+
+            rmq.publishHeartbeat(heartbeat.toString());
+        } catch (Exception e) {
+            LoggerUtil.error("Replica " + replicaId + " failed to publish heartbeat", e);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package messaging;
+
+/**
+ * Pull parser for the JSON documents replicas send back. Values are read one at a time in
+ * document order, so a caller can build its own objects directly instead of going through an
+ * org.json tree. Names and values are expected in the order {@link JsonStreamWriter} wrote them.
+ */
+public class JsonStreamReader {
+    private final CharSequence input;
+    private int pos;
+
+    public JsonStreamReader(CharSequence input) {
+        this.input = input;
+    }
+
+    public void beginObject() {
+        expect('{');
+    }
+
+    public void endObject() {
+        expect('}');
+    }
+
+    public void beginArray() {
+        expect('[');
+    }
+
+    public void endArray() {
+        expect(']');
+    }
+
+    // True while the current object or array has another element
+    public boolean hasNext() {
+        char c = peek();
+        return c != '}' && c != ']';
+    }
+
+    public String nextName() {
+        String name = readString();
+        expect(':');
+        return name;
+    }
+
+    public String nextString() {
+        if (peek() == 'n') {
+            readLiteral("null");
+            return null;
+        }
+        return readString();
+    }
+
+    public long nextLong() {
+        peek();
+        boolean negative = pos < input.length() && input.charAt(pos) == '-';
+        if (negative) pos++;
+
+        int start = pos;
+        long result = 0;
+        while (pos < input.length()) {
+            char c = input.charAt(pos);
+            if (c < '0' || c > '9') break;
+            // Accumulate negatively so Long.MIN_VALUE fits
+            if (result < (Long.MIN_VALUE + (c - '0')) / 10) {
+                throw error("Number out of range");
+            }
+            result = result * 10 - (c - '0');
+            pos++;
+        }
+        if (pos == start) {
+            throw error("Expected a number");
+        }
+        if (!negative && result == Long.MIN_VALUE) {
+            throw error("Number out of range");
+        }
+        afterValue();
+        return negative ? result : -result;
+    }
+
+    public int nextInt() {
+        long value = nextLong();
+        if (value != (int) value) {
+            throw error("Number out of range");
+        }
+        return (int) value;
+    }
+
+    public boolean nextBoolean() {
+        if (peek() == 't') {
+            readLiteral("true");
+            return true;
+        }
+        readLiteral("false");
+        return false;
+    }
+
+    // Skips the next value, including whole objects and arrays
+    public void skipValue() {
+        char c = peek();
+        if (c == '"') {
+            readString();
+        } else if (c == '{' || c == '[') {
+            int depth = 0;
+            do {
+                c = input.charAt(pos);
+                if (c == '"') {
+                    readString();
+                    continue;
+                }
+                if (c == '{' || c == '[') depth++;
+                if (c == '}' || c == ']') depth--;
+                pos++;
+            } while (depth > 0 && pos < input.length());
+            if (depth > 0) {
+                throw error("Unterminated value");
+            }
+            afterValue();
+        } else {
+            while (pos < input.length() && ",}] \t\r\n".indexOf(input.charAt(pos)) < 0) {
+                pos++;
+            }
+            afterValue();
+        }
+    }
+
+    private String readString() {
+        expect('"');
+        int start = pos;
+        // Fast path: no escapes, so the value is a plain slice of the input
+        while (pos < input.length()) {
+            char c = input.charAt(pos);
+            if (c == '"') {
+                String value = input.subSequence(start, pos++).toString();
+                afterValue();
+                return value;
+            }
+            if (c == '\\') break;
+            pos++;
+        }
+
+        StringBuilder sb = new StringBuilder(pos - start + 16).append(input, start, pos);
+        while (pos < input.length()) {
+            char c = input.charAt(pos++);
+            if (c == '"') {
+                afterValue();
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (pos >= input.length()) break;
+            char escaped = input.charAt(pos++);
+            switch (escaped) {
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    if (pos + 4 > input.length()) throw error("Truncated escape");
+                    sb.append((char) Integer.parseInt(input.subSequence(pos, pos + 4).toString(), 16));
+                    pos += 4;
+                    break;
+                default: sb.append(escaped);
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private void readLiteral(String literal) {
+        for (int i = 0; i < literal.length(); i++) {
+            if (pos >= input.length() || input.charAt(pos++) != literal.charAt(i)) {
+                throw error("Expected " + literal);
+            }
+        }
+        afterValue();
+    }
+
+    private void expect(char expected) {
+        if (peek() != expected) {
+            throw error("Expected '" + expected + "'");
+        }
+        pos++;
+        if (expected == '}' || expected == ']') {
+            afterValue();
+        }
+    }
+
+    // Steps over the comma between elements, so the next read starts at a value or a name
+    private void afterValue() {
+        if (peek() == ',') pos++;
+    }
+
+    private char peek() {
+        while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) {
+            pos++;
+        }
+        return pos < input.length() ? input.charAt(pos) : '\0';
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at offset " + pos);
+    }
+}
@@ -0,0 +1,208 @@
+package messaging;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes JSON straight into a growable UTF-8 byte buffer, one token at a time, so a response
+ * can be encoded while rows are read instead of building an org.json tree first. The buffer is
+ * kept between documents; use {@link #forThread()} to get the calling thread's instance.
+ */
+public class JsonStreamWriter {
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final ThreadLocal<JsonStreamWriter> PER_THREAD = ThreadLocal.withInitial(JsonStreamWriter::new);
+
+    private byte[] buffer = new byte[4096];
+    private int size;
+    // One bit per nesting level: set once the container has a first element
+    private long hasElements;
+    private int depth;
+
+    // Reset and ready for a new document
+    public static JsonStreamWriter forThread() {
+        JsonStreamWriter writer = PER_THREAD.get();
+        writer.reset();
+        return writer;
+    }
+
+    public void reset() {
+        size = 0;
+        depth = 0;
+        hasElements = 0;
+    }
+
+    public JsonStreamWriter beginObject() {
+        separate();
+        write('{');
+        push();
+        return this;
+    }
+
+    public JsonStreamWriter endObject() {
+        depth--;
+        write('}');
+        return this;
+    }
+
+    public JsonStreamWriter beginArray() {
+        separate();
+        write('[');
+        push();
+        return this;
+    }
+
+    public JsonStreamWriter endArray() {
+        depth--;
+        write(']');
+        return this;
+    }
+
+    public JsonStreamWriter name(String name) {
+        separate();
+        writeString(name);
+        write(':');
+        // The value that follows must not be preceded by a comma
+        hasElements &= ~(1L << depth);
+        return this;
+    }
+
+    public JsonStreamWriter value(String value) {
+        separate();
+        if (value == null) {
+            writeAscii("null");
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    public JsonStreamWriter value(long value) {
+        separate();
+        if (value == Long.MIN_VALUE) {
+            writeAscii("-9223372036854775808");
+            return this;
+        }
+        if (value < 0) {
+            write('-');
+            value = -value;
+        }
+        int start = size;
+        do {
+            write((char) ('0' + value % 10));
+            value /= 10;
+        } while (value > 0);
+        reverse(start, size - 1);
+        return this;
+    }
+
+    // Non-finite values have no JSON form and are written as null
+    public JsonStreamWriter value(double value) {
+        separate();
+        writeAscii(Double.isFinite(value) ? Double.toString(value) : "null");
+        return this;
+    }
+
+    public JsonStreamWriter value(boolean value) {
+        separate();
+        writeAscii(value ? "true" : "false");
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // The encoded document; the one copy needed because the AMQP client publishes whole arrays
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, size, StandardCharsets.UTF_8);
+    }
+
+    private void push() {
+        depth++;
+        if (depth >= Long.SIZE) {
+            throw new IllegalStateException("JSON nested too deeply");
+        }
+        hasElements &= ~(1L << depth);
+    }
+
+    private void separate() {
+        if (depth == 0) return;
+        long bit = 1L << depth;
+        if ((hasElements & bit) != 0) {
+            write(',');
+        }
+        hasElements |= bit;
+    }
+
+    private void writeString(String value) {
+        ensureCapacity(value.length() * 3 + 2);
+        buffer[size++] = '"';
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                ensureCapacity(2);
+                buffer[size++] = '\\';
+                buffer[size++] = (byte) c;
+            } else if (c < 0x20) {
+                ensureCapacity(6);
+                buffer[size++] = '\\';
+                buffer[size++] = 'u';
+                buffer[size++] = '0';
+                buffer[size++] = '0';
+                buffer[size++] = HEX[c >> 4];
+                buffer[size++] = HEX[c & 0xf];
+            } else if (c < 0x80) {
+                buffer[size++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[size++] = (byte) (0xc0 | (c >> 6));
+                buffer[size++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                ensureCapacity(4);
+                buffer[size++] = (byte) (0xf0 | (codePoint >> 18));
+                buffer[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                buffer[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                buffer[size++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else {
+                // Lone surrogates cannot be encoded, same replacement String.getBytes uses
+                if (Character.isSurrogate(c)) c = '?';
+                buffer[size++] = (byte) (0xe0 | (c >> 12));
+                buffer[size++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buffer[size++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        ensureCapacity(1);
+        buffer[size++] = '"';
+    }
+
+    private void writeAscii(String value) {
+        ensureCapacity(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            buffer[size++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void write(char c) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) c;
+    }
+
+    private void reverse(int from, int to) {
+        while (from < to) {
+            byte tmp = buffer[from];
+            buffer[from++] = buffer[to];
+            buffer[to--] = tmp;
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+}
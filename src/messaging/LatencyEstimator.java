@@ -0,0 +1,50 @@
+package messaging;
+
+import config.AppConfig;
+
+/**
+ * Smoothed round-trip estimate for one replica, computed the way TCP computes its
+ * retransmission timeout (RFC 6298): an EWMA of the latency plus an EWMA of its deviation,
+ * with the timeout set at SRTT + 4 * RTTVAR. Timeouts back the estimate off exponentially
+ * until the next successful sample.
+ */
+public class LatencyEstimator {
+    private static final int MAX_BACKOFF = 6;
+
+    private double srtt = -1;
+    private double rttvar;
+    private int backoff;
+
+    public synchronized void sample(long latencyMillis) {
+        if (srtt < 0) {
+            srtt = latencyMillis;
+            rttvar = latencyMillis / 2.0;
+        } else {
+            rttvar = (1 - AppConfig.RTT_BETA) * rttvar + AppConfig.RTT_BETA * Math.abs(srtt - latencyMillis);
+            srtt = (1 - AppConfig.RTT_ALPHA) * srtt + AppConfig.RTT_ALPHA * latencyMillis;
+        }
+        backoff = 0;
+    }
+
+    public synchronized void onTimeout() {
+        backoff = Math.min(backoff + 1, MAX_BACKOFF);
+    }
+
+    public synchronized boolean hasSamples() {
+        return srtt >= 0;
+    }
+
+    // Latency to expect from this replica, inflated while it is timing out
+    public synchronized double expectedLatency() {
+        return srtt < 0 ? 0 : srtt * (1 << backoff);
+    }
+
+    // How long to wait for this replica before giving up on a request
+    public synchronized long timeoutMillis() {
+        if (srtt < 0) {
+            return AppConfig.REPLICA_RESPONSE_TIMEOUT;
+        }
+        long rto = Math.round(srtt + Math.max(4 * rttvar, 1)) << backoff;
+        return Math.max(AppConfig.MIN_RESPONSE_TIMEOUT, Math.min(rto, AppConfig.REPLICA_RESPONSE_TIMEOUT));
+    }
+}
@@ -2,18 +2,59 @@ package messaging;
 
 import com.rabbitmq.client.*;
 import config.AppConfig;
+import messaging.CommandCodec.Opcode;
+import metrics.LatencyHistogram;
+import metrics.MetricsRegistry;
+import tracing.Trace;
+import tracing.TraceSink;
+import utils.HybridLogicalClock;
 import utils.LoggerUtil;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public class RabbitMQManager {
+    private static final LongAdder publishedWrites = publishedCounter("write");
+    private static final LongAdder publishedRequests = publishedCounter("request");
+    private static final LongAdder publishedResponses = publishedCounter("response");
+    private static final LongAdder publishedHeartbeats = publishedCounter("heartbeat");
+    private static final Map<Opcode, LatencyHistogram> requestLatency = new EnumMap<>(Opcode.class);
+    private static final Map<Opcode, LongAdder> requestTimeouts = new EnumMap<>(Opcode.class);
+
+    static {
+        MetricsRegistry metrics = MetricsRegistry.shared();
+        for (Opcode opcode : Opcode.values()) {
+            requestLatency.put(opcode, metrics.histogram("client_request_seconds",
+                    "Time from sending a request to its reply (for broadcasts, to the last reply)", "command", opcode.name()));
+            requestTimeouts.put(opcode, metrics.counter("client_request_timeouts_total",
+                    "Requests that got no reply before their deadline", "command", opcode.name()));
+        }
+    }
+
+    // Tells apart the gauges of several managers in one process
+    private static final AtomicInteger instances = new AtomicInteger();
+
+    private final String instance = String.valueOf(instances.incrementAndGet());
     private final ConnectionFactory factory;
     private Connection connection;
     private Channel channel;
@@ -34,8 +75,60 @@ public class RabbitMQManager {
      3-We need to wait for and collect all responses within a timeout period
      ***/
     private final ConcurrentHashMap<String, CompletableFuture<String>> pendingResponses;
+    private final ReadRouter readRouter = new ReadRouter();
+    private final ConcurrentHashMap<String, PendingRead> pendingReads = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, PendingBroadcast> pendingBroadcasts = new ConcurrentHashMap<>();
+    private final ClientMetrics clientMetrics = new ClientMetrics();
+    private final ScheduledExecutorService scheduler;
+    // Runs reply callbacks, so parsing a large reply never holds up the consumer thread
+    private final ExecutorService responseExecutor;
+    private ReplicaRegistry registry;
+    private Channel probeChannel;
+    private Integer localReplicaId;
     private boolean isConnected = false;
 
+    // Book-keeping for a routed read, kept until its deadline so late replies still count
+    private static class PendingRead {
+        final int primary;
+        final String message;
+        final long startNanos = System.nanoTime();
+        final Set<Integer> answered = ConcurrentHashMap.newKeySet();
+        volatile Integer hedge;
+        volatile long hedgeSentNanos;
+        volatile long deadlineNanos;
+        Integer winner;
+        long winnerMillis;
+
+        PendingRead(int primary, String message, long timeoutMillis) {
+            this.primary = primary;
+            this.message = message;
+            this.deadlineNanos = startNanos + timeoutMillis * 1_000_000;
+        }
+    }
+
+    // Replies collected for a broadcast that wants to hear from every replica
+    private static class PendingBroadcast {
+        final int expected;
+        final Consumer<String> onResponse;
+        final List<String> responses = new ArrayList<>();
+        final CompletableFuture<List<String>> future = new CompletableFuture<>();
+
+        PendingBroadcast(int expected, Consumer<String> onResponse) {
+            this.expected = expected;
+            this.onResponse = onResponse;
+        }
+
+        // Returns true once every expected replica has answered
+        synchronized boolean add(String response) {
+            responses.add(response);
+            return expected > 0 && responses.size() >= expected;
+        }
+
+        synchronized void complete() {
+            future.complete(new ArrayList<>(responses));
+        }
+    }
+
     public RabbitMQManager() throws IOException, TimeoutException {
         factory = new ConnectionFactory();
         factory.setHost(AppConfig.RABBITMQ_HOST);
@@ -48,12 +141,49 @@ public class RabbitMQManager {
         factory.setNetworkRecoveryInterval(2000);
 
         pendingResponses = new ConcurrentHashMap<>();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rabbitmq-manager-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        responseExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "rabbitmq-manager-responses");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        registerGauges();
 
         // Try to connect with retry logic
         connect();
         setupReplyQueue();
     }
 
+    private static LongAdder publishedCounter(String kind) {
+        return MetricsRegistry.shared().counter("rabbitmq_published_total", "Messages published, by kind", "kind", kind);
+    }
+
+    private void registerGauges() {
+        MetricsRegistry metrics = MetricsRegistry.shared();
+        String help = "Requests waiting for a reply";
+        metrics.gauge("rabbitmq_pending_requests", help, pendingResponses::size, "manager", instance, "kind", "response");
+        metrics.gauge("rabbitmq_pending_requests", help, pendingReads::size, "manager", instance, "kind", "routed_read");
+        metrics.gauge("rabbitmq_pending_requests", help, pendingBroadcasts::size, "manager", instance, "kind", "broadcast");
+    }
+
+    // Records the request's round trip once its future completes; a null result is a timeout
+    private static <T> void track(CompletableFuture<T> future, String message, Predicate<T> answered) {
+        Opcode opcode = CommandCodec.opcodeOf(message.getBytes(StandardCharsets.UTF_8));
+        long start = System.nanoTime();
+        future.thenAccept(result -> {
+            if (answered.test(result)) {
+                requestLatency.get(opcode).record(System.nanoTime() - start);
+            } else {
+                requestTimeouts.get(opcode).increment();
+            }
+        });
+    }
+
     private void connect() throws IOException, TimeoutException {
         int retryCount = 0;
         Exception lastException = null;
@@ -67,6 +197,10 @@ public class RabbitMQManager {
                 // Declare exchange - CRITICAL: use consistent parameters across all applications
                 // Use "fanout" exchange type to broadcast to all queues
                 channel.exchangeDeclare(AppConfig.EXCHANGE_NAME, BuiltinExchangeType.FANOUT, true);
+                // Writes get their own exchange so they never queue up in front of reads
+                channel.exchangeDeclare(AppConfig.WRITE_EXCHANGE_NAME, BuiltinExchangeType.FANOUT, true);
+                // Heartbeats are only interesting while fresh, so their exchange is transient
+                channel.exchangeDeclare(AppConfig.HEARTBEAT_EXCHANGE, BuiltinExchangeType.FANOUT, false);
 
                 isConnected = true;
                 LoggerUtil.log("Successfully connected to RabbitMQ");
@@ -100,13 +234,43 @@ public class RabbitMQManager {
         replyQueueName = channel.queueDeclare("", false, true, true, null).getQueue();
 
         DeliverCallback deliverCallback = (consumerTag, delivery) -> {
+            long receivedMicros = Trace.nowMicros();
             String correlationId = delivery.getProperties().getCorrelationId();
             String message = new String(delivery.getBody(), StandardCharsets.UTF_8);
+            observeTimestamp(delivery.getProperties());
+            Integer replicaId = replicaIdOf(delivery.getProperties());
+            if (replicaId != null) {
+                readRouter.register(replicaId);
+                PendingRead read = pendingReads.get(correlationId);
+                if (read != null) {
+                    recordReadResponse(read, replicaId);
+                }
+            }
 
             CompletableFuture<String> future = pendingResponses.get(correlationId);
             if (future != null && !future.isDone()) {
                 future.complete(message);
             }
+
+            PendingBroadcast broadcast = pendingBroadcasts.get(correlationId);
+            if (broadcast != null) {
+                // Callbacks and completion share one thread, so every callback has run
+                // by the time the broadcast's future completes
+                if (broadcast.onResponse != null) {
+                    responseExecutor.execute(() -> {
+                        if (!broadcast.future.isCancelled()) broadcast.onResponse.accept(message);
+                    });
+                }
+                if (broadcast.add(message) && pendingBroadcasts.remove(correlationId) != null) {
+                    responseExecutor.execute(broadcast::complete);
+                }
+            }
+
+            // Replicas echo the request's hop timestamps; late and hedged replies are traced too
+            Map<String, Object> headers = delivery.getProperties().getHeaders();
+            if (headers != null && headers.containsKey(AppConfig.HEADER_TRACE_RECEIVED)) {
+                TraceSink.shared().record(Trace.fromReply(correlationId, headers, receivedMicros));
+            }
         };
 
         // Set up consumer for reply queue
@@ -124,76 +288,412 @@ public class RabbitMQManager {
     }
 
     public void publish(String message) throws IOException {
+        publish(message, UUID.randomUUID().toString());
+    }
+
+    // The write ID lets replicas recognise a write they already applied; callers retrying
+    // the same write must pass the same ID
+    public void publish(String message, String writeId) throws IOException {
         try {
             reconnectIfNeeded();
 
-            // Make messages persistent
-            AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder()
-                    .deliveryMode(2) // Make message persistent
-                    .build();
+            // Writes go to the replication log through the write exchange, anything else to every replica's queue
+            byte[] body = message.getBytes(StandardCharsets.UTF_8);
 
             // Publish to the exchange with no routing key (fanout will broadcast to all bound queues)
-            channel.basicPublish(AppConfig.EXCHANGE_NAME, "", properties, message.getBytes(StandardCharsets.UTF_8));
-            LoggerUtil.log("Published: " + message);
+            String exchange = exchangeFor(body);
+            channel.basicPublish(exchange, "", writeProperties(writeId), body);
+            countPublished(exchange);
+            LoggerUtil.debug("Published: {}", message);
         } catch (IOException | TimeoutException e) {
             LoggerUtil.error("Failed to publish message", e);
             throw new IOException("Failed to publish message", e);
         }
     }
 
+    static String exchangeFor(byte[] body) {
+        return CommandCodec.isWrite(body) ? AppConfig.WRITE_EXCHANGE_NAME : AppConfig.EXCHANGE_NAME;
+    }
+
+    AMQP.BasicProperties writeProperties(String writeId) {
+        return new AMQP.BasicProperties.Builder()
+                .deliveryMode(2) // Make message persistent
+                .messageId(writeId)
+                .headers(publishHeaders())
+                .build();
+    }
+
+    // Only what goes to the write exchange is a write; anything else published here is a plain request
+    static void countPublished(String exchange) {
+        if (AppConfig.WRITE_EXCHANGE_NAME.equals(exchange)) {
+            publishedWrites.increment();
+        } else {
+            publishedRequests.increment();
+        }
+    }
+
+    // Broadcasts a request to every replica and completes with the first reply; only explicit
+    // consistency checks need a broadcast, ordinary reads go through publishRead
     public CompletableFuture<String> publishWithResponse(String message) throws IOException {
+        String correlationId = UUID.randomUUID().toString();
+        CompletableFuture<String> future = registerPending(correlationId, readRouter.broadcastTimeout());
+        track(future, message, Objects::nonNull);
+        sendRequest(AppConfig.EXCHANGE_NAME, "", message, correlationId);
+        return future;
+    }
+
+    // Broadcasts a request and collects every replica's reply. onResponse is called on the
+    // response executor as each reply arrives; the future completes as soon as all live replicas
+    // have answered, or at the adaptive deadline with whatever arrived by then. Cancelling the
+    // future drops the broadcast, and replies still on their way are ignored
+    public CompletableFuture<List<String>> publishToAll(String message, Consumer<String> onResponse) throws IOException {
+        String correlationId = UUID.randomUUID().toString();
+        PendingBroadcast broadcast = new PendingBroadcast(getLiveReplicaCount(), onResponse);
+        pendingBroadcasts.put(correlationId, broadcast);
+        track(broadcast.future, message, responses -> !responses.isEmpty());
+        forgetOnCancel(broadcast.future, () -> pendingBroadcasts.remove(correlationId));
+
+        scheduler.schedule(() -> {
+            PendingBroadcast expired = pendingBroadcasts.remove(correlationId);
+            if (expired != null) {
+                responseExecutor.execute(expired::complete);
+            }
+        }, readRouter.broadcastTimeout(), TimeUnit.MILLISECONDS);
+
         try {
-            reconnectIfNeeded();
+            sendRequest(AppConfig.EXCHANGE_NAME, "", message, correlationId);
+        } catch (IOException e) {
+            pendingBroadcasts.remove(correlationId);
+            throw e;
+        }
+        return broadcast.future;
+    }
+
+    // Sends a read to one replica's queue (through the default exchange) picked by the read router.
+    // Until a replica has answered once, the read is broadcast so that the replies reveal who is out there.
+    // If the chosen replica has not answered within the observed p95 latency (or its own adaptive
+    // timeout, whichever comes first), the same request (same correlation ID) is hedged to a second
+    // replica and whichever answers first wins.
+    public CompletableFuture<String> publishRead(String message) throws IOException {
+        // With heartbeats flowing, an empty live set means there is nobody to wait for
+        if (registry != null && registry.isWarmedUp() && registry.getLiveCount() == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Integer primary = readRouter.choose();
+        if (primary == null) {
+            return publishWithResponse(message);
+        }
+
+        String correlationId = UUID.randomUUID().toString();
+        long timeout = readRouter.timeoutFor(primary);
+        PendingRead read = new PendingRead(primary, message, timeout);
+        CompletableFuture<String> future = new CompletableFuture<>();
+        pendingResponses.put(correlationId, future);
+        pendingReads.put(correlationId, read);
+        track(future, message, Objects::nonNull);
+        // The read itself stays pending, so late replies still feed the router's statistics
+        forgetOnCancel(future, () -> pendingResponses.remove(correlationId));
+
+        clientMetrics.recordRead();
+        readRouter.onSent(primary);
+        try {
+            sendRequest("", AppConfig.QUEUE_PREFIX + primary, message, correlationId);
+        } catch (IOException e) {
+            pendingResponses.remove(correlationId);
+            pendingReads.remove(correlationId);
+            readRouter.onTimeout(primary);
+            throw e;
+        }
+
+        long hedgeDelay = readRouter.hedgeDelayMillis();
+        if (hedgeDelay < timeout) {
+            scheduler.schedule(() -> sendHedge(correlationId, read, future), hedgeDelay, TimeUnit.MILLISECONDS);
+        }
+        scheduler.schedule(() -> onReadDeadline(correlationId), timeout, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    private void sendHedge(String correlationId, PendingRead read, CompletableFuture<String> future) {
+        if (future.isDone()) return;
+
+        Integer hedge;
+        synchronized (read) {
+            if (read.hedge != null) return;
+            hedge = readRouter.choose(read.primary);
+            if (hedge == null) return;
 
-            String correlationId = UUID.randomUUID().toString();
+            read.hedgeSentNanos = System.nanoTime();
+            read.hedge = hedge;
+            // The read now lives until the hedge target's own deadline
+            read.deadlineNanos = Math.max(read.deadlineNanos,
+                    read.hedgeSentNanos + readRouter.timeoutFor(hedge) * 1_000_000);
+        }
+
+        clientMetrics.recordHedge();
+        readRouter.onSent(hedge);
+        try {
+            sendRequest("", AppConfig.QUEUE_PREFIX + hedge, read.message, correlationId);
+        } catch (IOException e) {
+            readRouter.onTimeout(hedge);
+        }
+    }
+
+    private void onReadDeadline(String correlationId) {
+        PendingRead read = pendingReads.get(correlationId);
+        CompletableFuture<String> future = pendingResponses.get(correlationId);
+        if (read == null) return;
+
+        // The primary's deadline doubles as a hedge trigger if the p95 one has not fired yet
+        if (future != null && !future.isDone()) {
+            sendHedge(correlationId, read, future);
+        }
+
+        long remaining = read.deadlineNanos - System.nanoTime();
+        if (remaining > 0) {
+            scheduler.schedule(() -> onReadDeadline(correlationId), remaining, TimeUnit.NANOSECONDS);
+            return;
+        }
+
+        pendingReads.remove(correlationId);
+        CompletableFuture<String> f = pendingResponses.remove(correlationId);
+        if (f != null && !f.isDone()) {
+            f.complete(null);
+        }
+        expireRead(read);
+    }
+
+    private CompletableFuture<String> registerPending(String correlationId, long timeoutMillis) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        pendingResponses.put(correlationId, future);
+        forgetOnCancel(future, () -> pendingResponses.remove(correlationId));
+
+        // Remove the pending response after the timeout period
+        scheduler.schedule(() -> {
+            CompletableFuture<String> f = pendingResponses.remove(correlationId);
+            if (f != null && !f.isDone()) {
+                f.complete(null);
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    private static void forgetOnCancel(CompletableFuture<?> future, Runnable forget) {
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) forget.run();
+        });
+    }
+
+    // Executor for continuing work on replies off both the consumer and the FX thread
+    public Executor getResponseExecutor() {
+        return responseExecutor;
+    }
+
+    private void sendRequest(String exchange, String routingKey, String message, String correlationId) throws IOException {
+        try {
+            reconnectIfNeeded();
 
             AMQP.BasicProperties props = new AMQP.BasicProperties.Builder()
                     .correlationId(correlationId)
                     .replyTo(replyQueueName)
                     .deliveryMode(2) // Make message persistent
+                    .headers(publishHeaders())
                     .build();
 
-            CompletableFuture<String> future = new CompletableFuture<>();
-            pendingResponses.put(correlationId, future);
-
-            channel.basicPublish(AppConfig.EXCHANGE_NAME, "", props, message.getBytes(StandardCharsets.UTF_8));
-            LoggerUtil.log("Published with response request: " + message + " (correlationId: " + correlationId + ")");
-
-            // Set up timeout to remove pending response after timeout period
-            java.util.Timer timer = new java.util.Timer(true);
-            timer.schedule(new java.util.TimerTask() {
-                @Override
-                public void run() {
-                    CompletableFuture<String> f = pendingResponses.remove(correlationId);
-                    if (f != null && !f.isDone()) {
-                        f.complete(null);
-                    }
-                }
-            }, AppConfig.REPLICA_RESPONSE_TIMEOUT);
-
-            return future;
+            channel.basicPublish(exchange, routingKey, props, message.getBytes(StandardCharsets.UTF_8));
+            publishedRequests.increment();
+            LoggerUtil.debug("Published with response request: {} (correlationId: {}, queue: {})",
+                    message, correlationId, routingKey.isEmpty() ? "all" : routingKey);
         } catch (IOException | TimeoutException e) {
             LoggerUtil.error("Failed to publish message with response", e);
             throw new IOException("Failed to publish message with response", e);
         }
     }
 
+    // Replies keep arriving after the read's future completed, which is how a losing
+    // primary's latency is observed and the time saved by the hedge is measured
+    private void recordReadResponse(PendingRead read, int replicaId) {
+        long now = System.nanoTime();
+        if (!read.answered.add(replicaId)) return;
+
+        long sentAt = replicaId == read.primary ? read.startNanos : read.hedgeSentNanos;
+        readRouter.onResponse(replicaId, (now - sentAt) / 1_000_000);
+
+        long elapsed = (now - read.startNanos) / 1_000_000;
+        synchronized (read) {
+            if (read.winner == null) {
+                read.winner = replicaId;
+                read.winnerMillis = elapsed;
+                if (replicaId != read.primary) {
+                    clientMetrics.recordHedgeWin();
+                }
+            } else if (replicaId == read.primary) {
+                clientMetrics.recordLatencySaved(elapsed - read.winnerMillis);
+            }
+        }
+    }
+
+    private void expireRead(PendingRead read) {
+        if (!read.answered.contains(read.primary)) {
+            readRouter.onTimeout(read.primary);
+            synchronized (read) {
+                if (read.winner != null) {
+                    // The primary never answered, the hedge saved at least the rest of the read's lifetime
+                    long lifetime = (System.nanoTime() - read.startNanos) / 1_000_000;
+                    clientMetrics.recordLatencySaved(lifetime - read.winnerMillis);
+                }
+            }
+        }
+        Integer hedge = read.hedge;
+        if (hedge != null && !read.answered.contains(hedge)) {
+            readRouter.onTimeout(hedge);
+        }
+    }
+
+    public ClientMetrics getClientMetrics() {
+        return clientMetrics;
+    }
+
     public void publishResponse(String message, String replyTo, String correlationId) throws IOException {
+        publishResponse(message.getBytes(StandardCharsets.UTF_8), replyTo, correlationId);
+    }
+
+    // For responses that are already encoded, e.g. by JsonStreamWriter
+    public void publishResponse(byte[] body, String replyTo, String correlationId) throws IOException {
+        publishResponse(body, replyTo, correlationId, null);
+    }
+
+    // traceHeaders carries the request's hop timestamps back to the requester
+    public void publishResponse(byte[] body, String replyTo, String correlationId,
+                                Map<String, Object> traceHeaders) throws IOException {
         try {
             reconnectIfNeeded();
 
+            Map<String, Object> headers = publishHeaders();
+            if (localReplicaId != null) {
+                headers.put(AppConfig.HEADER_REPLICA_ID, localReplicaId);
+            }
+            if (traceHeaders != null) {
+                headers.putAll(traceHeaders);
+                headers.put(AppConfig.HEADER_TRACE_REPLIED, Trace.nowMicros());
+            }
+
             AMQP.BasicProperties props = new AMQP.BasicProperties.Builder()
                     .correlationId(correlationId)
+                    .headers(headers)
                     .build();
 
-            channel.basicPublish("", replyTo, props, message.getBytes(StandardCharsets.UTF_8));
-            LoggerUtil.log("Published response to " + replyTo + ": " + message);
+            channel.basicPublish("", replyTo, props, body);
+            publishedResponses.increment();
+            LoggerUtil.debug("Published {}-byte response to {}", body.length, replyTo);
         } catch (IOException | TimeoutException e) {
             LoggerUtil.error("Failed to publish response", e);
             throw new IOException("Failed to publish response", e);
         }
     }
 
+    // Hybrid logical clock timestamp of the publish; replicas store it verbatim for writes and
+    // consumers of the replication log derive how far behind they are from it. The trace stamp
+    // starts the request's trace.
+    private Map<String, Object> publishHeaders() {
+        Map<String, Object> headers = new HashMap<>();
+        headers.put(AppConfig.HEADER_HLC, HybridLogicalClock.shared().now());
+        headers.put(AppConfig.HEADER_TRACE_SENT, Trace.nowMicros());
+        return headers;
+    }
+
+    // Advances the local clock past a timestamp carried by a received message
+    public static void observeTimestamp(AMQP.BasicProperties properties) {
+        Map<String, Object> headers = properties.getHeaders();
+        Object hlc = headers != null ? headers.get(AppConfig.HEADER_HLC) : null;
+        if (hlc instanceof Number) {
+            HybridLogicalClock.shared().update(((Number) hlc).longValue());
+        }
+    }
+
+    // Replicas identify themselves on every response so clients can route reads to them directly
+    public void setLocalReplicaId(int replicaId) {
+        this.localReplicaId = replicaId;
+    }
+
+    private static Integer replicaIdOf(AMQP.BasicProperties properties) {
+        Map<String, Object> headers = properties.getHeaders();
+        Object replicaId = headers != null ? headers.get(AppConfig.HEADER_REPLICA_ID) : null;
+        return replicaId instanceof Number ? ((Number) replicaId).intValue() : null;
+    }
+
+    // Subscribes to replica heartbeats. From then on reads are only routed to live replicas,
+    // with the queue depth each replica reports, and callers can size quorums on the live set
+    public synchronized ReplicaRegistry startMembership() throws IOException {
+        if (registry != null) return registry;
+
+        registry = new ReplicaRegistry(this);
+        registry.addListener(new ReplicaRegistry.Listener() {
+            @Override
+            public void onHeartbeat(ReplicaRegistry.Member member) {
+                readRouter.register(member.getReplicaId());
+                readRouter.updateQueueDepth(member.getReplicaId(), member.getQueueDepth());
+            }
+
+            @Override
+            public void onMemberDown(ReplicaRegistry.Member member) {
+                readRouter.remove(member.getReplicaId());
+            }
+        });
+        registry.start();
+        return registry;
+    }
+
+    public ReplicaRegistry getRegistry() {
+        return registry;
+    }
+
+    // Replicas currently considered alive; without heartbeats, the replicas that have answered so far
+    public int getLiveReplicaCount() {
+        return registry != null ? registry.getLiveCount() : readRouter.knownReplicas().size();
+    }
+
+    public void publishHeartbeat(String heartbeat) throws IOException {
+        try {
+            reconnectIfNeeded();
+
+            AMQP.BasicProperties props = new AMQP.BasicProperties.Builder()
+                    .deliveryMode(1) // Heartbeats are not worth persisting
+                    .expiration(String.valueOf(AppConfig.HEARTBEAT_INTERVAL))
+                    .build();
+
+            channel.basicPublish(AppConfig.HEARTBEAT_EXCHANGE, "", props, heartbeat.getBytes(StandardCharsets.UTF_8));
+            publishedHeartbeats.increment();
+        } catch (IOException | TimeoutException e) {
+            throw new IOException("Failed to publish heartbeat", e);
+        }
+    }
+
+    // Number of messages waiting in a queue, or -1 if it cannot be determined
+    public synchronized int getQueueDepth(String queueName) {
+        try {
+            if (probeChannel == null || !probeChannel.isOpen()) {
+                probeChannel = connection.createChannel();
+            }
+            return (int) probeChannel.messageCount(queueName);
+        } catch (Exception e) {
+            // A missing queue closes the probe channel; it is reopened on the next call
+            probeChannel = null;
+            return -1;
+        }
+    }
+
+    // Dedicated channel for consumers that need their own QoS (e.g. the replication log)
+    public Channel createChannel() throws IOException {
+        try {
+            reconnectIfNeeded();
+            return connection.createChannel();
+        } catch (IOException | TimeoutException e) {
+            LoggerUtil.error("Failed to create channel", e);
+            throw new IOException("Failed to create channel", e);
+        }
+    }
+
     public void declareQueue(String queueName) throws IOException {
         try {
             reconnectIfNeeded();
@@ -214,26 +714,24 @@ public class RabbitMQManager {
         }
     }
 
-    public void consume(String queueName, DeliverCallback deliverCallback) throws IOException {
-        try {
-            reconnectIfNeeded();
-
-            // Set QoS - limit the number of unacknowledged messages
-            channel.basicQos(1);
-
-            // Set up consumer with auto-acknowledge mode (true)
-            // This is important as the default is no acknowledgment
-            String consumerTag = channel.basicConsume(queueName, true, deliverCallback, consTag -> {});
-
-            LoggerUtil.log("Consumer registered for queue: " + queueName + " with tag: " + consumerTag);
-        } catch (IOException | TimeoutException e) {
-            LoggerUtil.error("Failed to set up consumer for queue: " + queueName, e);
-            throw new IOException("Failed to set up consumer for queue: " + queueName, e);
-        }
-    }
-
     public void close() {
         try {
+            scheduler.shutdownNow();
+            responseExecutor.shutdownNow();
+            if (registry != null) {
+                registry.close();
+            }
+            if (clientMetrics.getReads() > 0) {
+                LoggerUtil.log("Client read metrics: " + clientMetrics);
+            }
+            String traceReport = TraceSink.shared().report();
+            if (!traceReport.isEmpty()) {
+                LoggerUtil.log("Slow requests by stage:\n" + traceReport);
+            }
+            MetricsRegistry metrics = MetricsRegistry.shared();
+            for (String kind : new String[]{"response", "routed_read", "broadcast"}) {
+                metrics.removeGauge("rabbitmq_pending_requests", "manager", instance, "kind", kind);
+            }
             if (channel != null && channel.isOpen()) {
                 channel.close();
             }
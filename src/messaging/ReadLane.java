@@ -0,0 +1,125 @@
+package messaging;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.DeliverCallback;
+import com.rabbitmq.client.Delivery;
+import config.AppConfig;
+import metrics.LatencyHistogram;
+import utils.HybridLogicalClock;
+import utils.LoggerUtil;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Serves a replica's read queue. The write lane is the {@link ReplicationLogApplier}, which
+ * has its own channel, prefetch and thread; the read lane gets the same separation, so a
+ * READ LAST never waits behind a burst of writes and applying writes keeps its log order.
+ *
+ * Reads are consumed on a dedicated channel with a prefetch of {@link AppConfig#READ_PREFETCH_COUNT}
+ * and handed straight to a small pool of high-priority threads. Each read is acknowledged once
+ * its handler returns, and the time from its publish to that point is checked against
+ * {@link AppConfig#READ_LATENCY_SLO}.
+ */
+public class ReadLane {
+
+    public interface Handler {
+        void handle(Delivery delivery) throws Exception;
+    }
+
+    private final RabbitMQManager rmq;
+    private final int replicaId;
+    private final ExecutorService executor;
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong sloMisses = new AtomicLong();
+    // Latencies since the last heartbeat took them
+    private final AtomicReference<LatencyHistogram> recentLatency = new AtomicReference<>(new LatencyHistogram());
+    private Channel channel;
+    private String consumerTag;
+
+    public ReadLane(RabbitMQManager rmq, int replicaId) {
+        this.rmq = rmq;
+        this.replicaId = replicaId;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(AppConfig.READ_LANE_THREADS, r -> {
+            Thread thread = new Thread(r, "read-lane-" + replicaId + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MAX_PRIORITY);
+            return thread;
+        });
+    }
+
+    public synchronized void start(String queueName, Handler handler) throws IOException {
+        if (channel != null) return;
+
+        channel = rmq.createChannel();
+        channel.basicQos(AppConfig.READ_PREFETCH_COUNT);
+
+        Channel laneChannel = channel;
+        DeliverCallback deliverCallback = (tag, delivery) -> executor.execute(() -> serve(laneChannel, delivery, handler));
+        consumerTag = channel.basicConsume(queueName, false, deliverCallback, tag -> {});
+        LoggerUtil.log("Read lane consuming " + queueName + " for replica " + replicaId);
+    }
+
+    private void serve(Channel laneChannel, Delivery delivery, Handler handler) {
+        try {
+            handler.handle(delivery);
+        } catch (Exception e) {
+            // The handler has already replied with the error; redelivering would just fail again
+            LoggerUtil.error("Replica " + replicaId + " failed to serve read", e);
+        }
+
+        try {
+            laneChannel.basicAck(delivery.getEnvelope().getDeliveryTag(), false);
+        } catch (Exception e) {
+            LoggerUtil.error("Replica " + replicaId + " failed to acknowledge read", e);
+        }
+
+        reads.incrementAndGet();
+        long latency = millisSincePublish(delivery);
+        recentLatency.get().recordMillis(latency);
+        if (latency > AppConfig.READ_LATENCY_SLO) {
+            sloMisses.incrementAndGet();
+            LoggerUtil.warn("Replica {} served a read in {} ms (SLO {} ms)", replicaId, latency, AppConfig.READ_LATENCY_SLO);
+        }
+    }
+
+    // Time since the request was published, taken from the requester's hybrid logical clock stamp
+    public static long millisSincePublish(Delivery delivery) {
+        Map<String, Object> headers = delivery.getProperties().getHeaders();
+        Object hlc = headers != null ? headers.get(AppConfig.HEADER_HLC) : null;
+        if (!(hlc instanceof Number)) return 0;
+        return Math.max(0, System.currentTimeMillis() - HybridLogicalClock.toEpochMillis(((Number) hlc).longValue()));
+    }
+
+    public long getReads() {
+        return reads.get();
+    }
+
+    public long getSloMisses() {
+        return sloMisses.get();
+    }
+
+    // Read latencies recorded since the previous call
+    public LatencyHistogram takeRecentLatency() {
+        return recentLatency.getAndSet(new LatencyHistogram());
+    }
+
+    public synchronized void stop() {
+        try {
+            if (channel != null && channel.isOpen()) {
+                channel.basicCancel(consumerTag);
+                channel.close();
+            }
+        } catch (Exception e) {
+            LoggerUtil.error("Failed to stop read lane for replica " + replicaId, e);
+        }
+        channel = null;
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,151 @@
+package messaging;
+
+import config.AppConfig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks the replica a read is sent to. Uses "power of two choices": two known replicas are
+ * drawn at random and the one with the lower cost wins, where cost is the smoothed latency
+ * weighted by the work already waiting on it (our outstanding reads plus its broker queue
+ * depth). This spreads reads evenly without every client herding onto the same "best" node.
+ */
+public class ReadRouter {
+
+    static class ReplicaStats {
+        final int replicaId;
+        final AtomicInteger outstanding = new AtomicInteger();
+        final LatencyEstimator latency = new LatencyEstimator();
+        volatile int queueDepth;
+        volatile int consecutiveTimeouts;
+        volatile long suspectUntil;
+
+        ReplicaStats(int replicaId) {
+            this.replicaId = replicaId;
+        }
+
+        double cost() {
+            return (latency.expectedLatency() + 1) * (outstanding.get() + queueDepth + 1);
+        }
+    }
+
+    private final ConcurrentHashMap<Integer, ReplicaStats> replicas = new ConcurrentHashMap<>();
+    private final long[] latencySamples = new long[AppConfig.HEDGE_SAMPLE_WINDOW];
+    private int sampleCount;
+    private int sampleIndex;
+
+    // Replicas are learned from the responses they send
+    public void register(int replicaId) {
+        replicas.computeIfAbsent(replicaId, ReplicaStats::new);
+    }
+
+    // Called when membership reports the replica as down
+    public void remove(int replicaId) {
+        replicas.remove(replicaId);
+    }
+
+    public Set<Integer> knownReplicas() {
+        return replicas.keySet();
+    }
+
+    // Returns the replica to read from, or null when none is known (caller falls back to fanout)
+    public Integer choose() {
+        return choose(null);
+    }
+
+    // Same as choose(), but never returns the excluded replica (used to pick a hedge target)
+    public Integer choose(Integer excluded) {
+        long now = System.currentTimeMillis();
+        List<ReplicaStats> candidates = new ArrayList<>();
+        for (ReplicaStats stats : replicas.values()) {
+            if (stats.suspectUntil <= now && (excluded == null || stats.replicaId != excluded)) {
+                candidates.add(stats);
+            }
+        }
+
+        if (candidates.isEmpty()) return null;
+        if (candidates.size() == 1) return candidates.get(0).replicaId;
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) second++;
+
+        ReplicaStats a = candidates.get(first);
+        ReplicaStats b = candidates.get(second);
+        return a.cost() <= b.cost() ? a.replicaId : b.replicaId;
+    }
+
+    public void onSent(int replicaId) {
+        replicas.computeIfAbsent(replicaId, ReplicaStats::new).outstanding.incrementAndGet();
+    }
+
+    public void onResponse(int replicaId, long latencyMillis) {
+        ReplicaStats stats = replicas.computeIfAbsent(replicaId, ReplicaStats::new);
+        stats.outstanding.updateAndGet(n -> Math.max(0, n - 1));
+        stats.consecutiveTimeouts = 0;
+        stats.latency.sample(latencyMillis);
+        recordSample(latencyMillis);
+    }
+
+    private synchronized void recordSample(long latencyMillis) {
+        latencySamples[sampleIndex] = latencyMillis;
+        sampleIndex = (sampleIndex + 1) % latencySamples.length;
+        sampleCount = Math.min(sampleCount + 1, latencySamples.length);
+    }
+
+    // How long to wait for the first replica before hedging: the observed p95 read latency
+    public synchronized long hedgeDelayMillis() {
+        if (sampleCount < AppConfig.HEDGE_MIN_SAMPLES) {
+            return AppConfig.HEDGE_DEFAULT_DELAY;
+        }
+
+        long[] sorted = Arrays.copyOf(latencySamples, sampleCount);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(sampleCount * AppConfig.HEDGE_PERCENTILE) - 1;
+        return Math.max(AppConfig.HEDGE_MIN_DELAY, sorted[index]);
+    }
+
+    // A replica that keeps timing out (stopped, broken, or its process is gone) is skipped for a while
+    public void onTimeout(int replicaId) {
+        ReplicaStats stats = replicas.get(replicaId);
+        if (stats == null) return;
+
+        stats.outstanding.updateAndGet(n -> Math.max(0, n - 1));
+        stats.latency.onTimeout();
+        if (++stats.consecutiveTimeouts >= AppConfig.REPLICA_SUSPECT_TIMEOUTS) {
+            stats.suspectUntil = System.currentTimeMillis() + AppConfig.REPLICA_SUSPECT_COOLDOWN;
+            stats.consecutiveTimeouts = 0;
+        }
+    }
+
+    // Deadline for a request to one replica, derived from its latency estimate
+    public long timeoutFor(int replicaId) {
+        ReplicaStats stats = replicas.get(replicaId);
+        return stats != null ? stats.latency.timeoutMillis() : AppConfig.REPLICA_RESPONSE_TIMEOUT;
+    }
+
+    // Deadline for a broadcast: the slowest known replica's timeout, or the configured maximum
+    // while some replica has no latency history yet
+    public long broadcastTimeout() {
+        long timeout = 0;
+        for (ReplicaStats stats : replicas.values()) {
+            if (!stats.latency.hasSamples()) return AppConfig.REPLICA_RESPONSE_TIMEOUT;
+            timeout = Math.max(timeout, stats.latency.timeoutMillis());
+        }
+        return timeout > 0 ? timeout : AppConfig.REPLICA_RESPONSE_TIMEOUT;
+    }
+
+    public void updateQueueDepth(int replicaId, int depth) {
+        ReplicaStats stats = replicas.get(replicaId);
+        if (stats != null) {
+            stats.queueDepth = depth;
+        }
+    }
+}
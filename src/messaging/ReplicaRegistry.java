@@ -0,0 +1,237 @@
+package messaging;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.DeliverCallback;
+import config.AppConfig;
+import org.json.JSONObject;
+import utils.LoggerUtil;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side view of which replicas are alive, built from their heartbeats.
+ *
+ * Failure detection is phi-accrual: instead of a fixed timeout, each replica's heartbeat
+ * inter-arrival times are tracked and phi expresses how unlikely the current silence is
+ * given that history (phi = 8 means roughly a 1 in 10^8 chance the replica is still alive
+ * and merely late). A replica is reported down once phi crosses {@link AppConfig#PHI_THRESHOLD}.
+ */
+public class ReplicaRegistry {
+
+    public interface Listener {
+        default void onHeartbeat(Member member) {}
+
+        default void onMemberUp(Member member) {}
+
+        default void onMemberDown(Member member) {}
+    }
+
+    public static class Member {
+        private final int replicaId;
+        private final long[] intervals = new long[AppConfig.PHI_SAMPLE_WINDOW];
+        private int intervalCount;
+        private int intervalIndex;
+        private volatile long lastHeartbeatAt;
+        private volatile boolean alive;
+        private volatile int queueDepth;
+        private volatile double applyRate;
+        private volatile long lastAppliedOffset;
+        private volatile boolean catchingUp;
+        private volatile long lagMillis;
+        private volatile long readCount;
+        private volatile double readP50Millis;
+        private volatile double readP99Millis;
+
+        Member(int replicaId) {
+            this.replicaId = replicaId;
+        }
+
+        synchronized void heartbeat(long now, JSONObject heartbeat) {
+            // The gap before a replica comes back says nothing about its usual heartbeat rhythm
+            if (alive && lastHeartbeatAt > 0) {
+                intervals[intervalIndex] = now - lastHeartbeatAt;
+                intervalIndex = (intervalIndex + 1) % intervals.length;
+                intervalCount = Math.min(intervalCount + 1, intervals.length);
+            }
+            lastHeartbeatAt = now;
+            queueDepth = heartbeat.optInt("queueDepth", 0);
+            applyRate = heartbeat.optDouble("applyRate", 0);
+            lastAppliedOffset = heartbeat.optLong("lastAppliedOffset", -1);
+            catchingUp = heartbeat.optBoolean("catchingUp", false);
+            lagMillis = heartbeat.optLong("lagMillis", 0);
+            readCount = heartbeat.optLong("readCount", 0);
+            readP50Millis = heartbeat.optDouble("readP50Millis", 0);
+            readP99Millis = heartbeat.optDouble("readP99Millis", 0);
+        }
+
+        // Phi of the silence since the last heartbeat, assuming normally distributed intervals
+        public synchronized double phi(long now) {
+            double mean = AppConfig.HEARTBEAT_INTERVAL;
+            double variance = 0;
+            if (intervalCount > 0) {
+                double sum = 0;
+                for (int i = 0; i < intervalCount; i++) sum += intervals[i];
+                mean = sum / intervalCount;
+                for (int i = 0; i < intervalCount; i++) variance += (intervals[i] - mean) * (intervals[i] - mean);
+                variance /= intervalCount;
+            }
+            // A perfectly regular history would make any jitter look fatal
+            double stdDev = Math.max(Math.sqrt(variance), AppConfig.HEARTBEAT_INTERVAL / 4.0);
+
+            double y = ((now - lastHeartbeatAt) - mean) / stdDev;
+            double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+            double probabilityLater = (now - lastHeartbeatAt) > mean ? e / (1 + e) : 1 - 1 / (1 + e);
+            return -Math.log10(Math.max(probabilityLater, Double.MIN_VALUE));
+        }
+
+        public int getReplicaId() { return replicaId; }
+        public long getLastHeartbeatAt() { return lastHeartbeatAt; }
+        public boolean isAlive() { return alive; }
+        public int getQueueDepth() { return queueDepth; }
+        public double getApplyRate() { return applyRate; }
+        public long getLastAppliedOffset() { return lastAppliedOffset; }
+        public boolean isCatchingUp() { return catchingUp; }
+        public long getLagMillis() { return lagMillis; }
+        public long getReadCount() { return readCount; }
+        public double getReadP50Millis() { return readP50Millis; }
+        public double getReadP99Millis() { return readP99Millis; }
+    }
+
+    private final RabbitMQManager rmq;
+    private final ConcurrentHashMap<Integer, Member> members = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService detector;
+    private Channel channel;
+    private long startedAt;
+
+    public ReplicaRegistry(RabbitMQManager rmq) {
+        this.rmq = rmq;
+        this.detector = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "replica-failure-detector");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void start() throws IOException {
+        channel = rmq.createChannel();
+        String queueName = channel.queueDeclare("", false, true, true, null).getQueue();
+        channel.queueBind(queueName, AppConfig.HEARTBEAT_EXCHANGE, "");
+
+        DeliverCallback deliverCallback = (consumerTag, delivery) -> {
+            try {
+                onHeartbeat(new JSONObject(new String(delivery.getBody(), StandardCharsets.UTF_8)));
+            } catch (Exception e) {
+                LoggerUtil.error("Ignoring malformed heartbeat", e);
+            }
+        };
+        channel.basicConsume(queueName, true, deliverCallback, consumerTag -> {});
+
+        startedAt = System.currentTimeMillis();
+        detector.scheduleAtFixedRate(this::detectFailures,
+                AppConfig.HEARTBEAT_INTERVAL / 2, AppConfig.HEARTBEAT_INTERVAL / 2, TimeUnit.MILLISECONDS);
+        LoggerUtil.log("Listening for replica heartbeats on " + AppConfig.HEARTBEAT_EXCHANGE);
+    }
+
+    private void onHeartbeat(JSONObject heartbeat) {
+        if (!AppConfig.MSG_HEARTBEAT.equals(heartbeat.optString("type"))) return;
+
+        Member member = members.computeIfAbsent(heartbeat.getInt("replicaId"), Member::new);
+        member.heartbeat(System.currentTimeMillis(), heartbeat);
+
+        boolean cameUp = false;
+        synchronized (member) {
+            if (!member.alive) {
+                member.alive = true;
+                cameUp = true;
+            }
+        }
+
+        if (cameUp) {
+            LoggerUtil.log("Replica " + member.replicaId + " is up");
+            listeners.forEach(l -> l.onMemberUp(member));
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+        listeners.forEach(l -> l.onHeartbeat(member));
+    }
+
+    private void detectFailures() {
+        long now = System.currentTimeMillis();
+        for (Member member : members.values()) {
+            boolean wentDown = false;
+            synchronized (member) {
+                if (member.alive && member.phi(now) > AppConfig.PHI_THRESHOLD) {
+                    member.alive = false;
+                    wentDown = true;
+                }
+            }
+
+            if (wentDown) {
+                LoggerUtil.log("Replica " + member.replicaId + " is suspected down (no heartbeat for " +
+                        (now - member.lastHeartbeatAt) + " ms)");
+                listeners.forEach(l -> l.onMemberDown(member));
+            }
+        }
+    }
+
+    public List<Member> getLiveMembers() {
+        List<Member> live = new ArrayList<>();
+        for (Member member : members.values()) {
+            if (member.alive) live.add(member);
+        }
+        return live;
+    }
+
+    public int getLiveCount() {
+        int count = 0;
+        for (Member member : members.values()) {
+            if (member.alive) count++;
+        }
+        return count;
+    }
+
+    public Member getMember(int replicaId) {
+        return members.get(replicaId);
+    }
+
+    // True once every running replica has had the chance to send a heartbeat
+    public boolean isWarmedUp() {
+        return startedAt > 0 && System.currentTimeMillis() - startedAt >= 2 * AppConfig.HEARTBEAT_INTERVAL;
+    }
+
+    // Blocks until at least one replica is alive or the timeout elapses
+    public synchronized boolean awaitMembers(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long remaining = timeoutMillis;
+        while (getLiveCount() == 0 && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return getLiveCount() > 0;
+    }
+
+    public void close() {
+        detector.shutdownNow();
+        try {
+            if (channel != null && channel.isOpen()) {
+                channel.close();
+            }
+        } catch (Exception e) {
+            LoggerUtil.error("Failed to close heartbeat channel", e);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package messaging;
+
+import com.rabbitmq.client.*;
+import config.AppConfig;
+import utils.LoggerUtil;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Durable, append-only log of every write published to the write exchange, backed by a
+ * RabbitMQ stream queue. Unlike the per-replica classic queues, reading the stream does not
+ * remove anything from it, so a replica that was stopped or broken can rewind to the offset
+ * after the last entry it applied and replay what it missed.
+ */
+public class ReplicationLog {
+
+    public interface EntryHandler {
+        void onEntry(long offset, Delivery delivery) throws Exception;
+    }
+
+    public static class Subscription {
+        private final Channel channel;
+        private final String consumerTag;
+
+        private Subscription(Channel channel, String consumerTag) {
+            this.channel = channel;
+            this.consumerTag = consumerTag;
+        }
+
+        // Stream consumers must acknowledge, otherwise the broker stops delivering after the prefetch
+        public void ack(long deliveryTag, boolean multiple) throws IOException {
+            channel.basicAck(deliveryTag, multiple);
+        }
+
+        public void cancel() {
+            try {
+                if (channel.isOpen()) {
+                    channel.basicCancel(consumerTag);
+                    channel.close();
+                }
+            } catch (Exception e) {
+                LoggerUtil.error("Failed to cancel replication log subscription", e);
+            }
+        }
+    }
+
+    private final RabbitMQManager rmq;
+
+    public ReplicationLog(RabbitMQManager rmq) {
+        this.rmq = rmq;
+    }
+
+    public void declare() throws IOException {
+        Channel channel = rmq.createChannel();
+        try {
+            Map<String, Object> args = new HashMap<>();
+            args.put("x-queue-type", "stream");
+            args.put("x-max-age", AppConfig.REPLICATION_LOG_MAX_AGE);
+
+            // Streams must be durable, non-exclusive and non-auto-delete
+            channel.queueDeclare(AppConfig.REPLICATION_LOG_QUEUE, true, false, false, args);
+            channel.queueBind(AppConfig.REPLICATION_LOG_QUEUE, AppConfig.WRITE_EXCHANGE_NAME, "");
+            // Logs declared before writes had their own exchange also recorded every read
+            channel.queueUnbind(AppConfig.REPLICATION_LOG_QUEUE, AppConfig.EXCHANGE_NAME, "");
+            LoggerUtil.log("Replication log declared and bound: " + AppConfig.REPLICATION_LOG_QUEUE);
+        } finally {
+            try {
+                channel.close();
+            } catch (Exception e) {
+                LoggerUtil.error("Failed to close declaration channel", e);
+            }
+        }
+    }
+
+    public Subscription subscribe(long fromOffset, EntryHandler handler) throws IOException {
+        Channel channel = rmq.createChannel();
+        channel.basicQos(AppConfig.REPLAY_PREFETCH_COUNT);
+
+        Map<String, Object> args = new HashMap<>();
+        args.put("x-stream-offset", fromOffset);
+
+        DeliverCallback deliverCallback = (consumerTag, delivery) -> {
+            long offset = offsetOf(delivery);
+            try {
+                handler.onEntry(offset, delivery);
+            } catch (Exception e) {
+                LoggerUtil.error("Failed to handle replication log entry at offset " + offset, e);
+            }
+        };
+
+        String consumerTag = channel.basicConsume(AppConfig.REPLICATION_LOG_QUEUE, false, args,
+                deliverCallback, consTag -> {});
+        LoggerUtil.log("Subscribed to replication log from offset " + fromOffset);
+        return new Subscription(channel, consumerTag);
+    }
+
+    private static long offsetOf(Delivery delivery) {
+        Map<String, Object> headers = delivery.getProperties().getHeaders();
+        Object offset = headers != null ? headers.get("x-stream-offset") : null;
+        return offset instanceof Number ? ((Number) offset).longValue() : -1;
+    }
+}
@@ -0,0 +1,464 @@
+package messaging;
+
+import com.rabbitmq.client.Delivery;
+import config.AppConfig;
+import database.TextEntity;
+import database.RepositoryException;
+import database.TextRepository;
+import metrics.CommandTimers;
+import tracing.Trace;
+import tracing.TraceSink;
+import utils.HybridLogicalClock;
+import utils.LoggerUtil;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Applies writes from the {@link ReplicationLog} to a replica's repository.
+ *
+ * On start it rewinds to the offset after the last applied entry and replays the backlog in
+ * batches (one DB transaction per batch), reporting progress until the entries it sees are
+ * less than {@link AppConfig#CAUGHT_UP_LAG_THRESHOLD} old or the log runs dry. After that every
+ * write is applied as soon as it arrives. Stopping simply cancels the subscription; nothing is
+ * lost because the stored offset only advances together with the applied rows.
+ *
+ * Writes carry a unique ID (the AMQP message ID); a write whose ID was already applied, e.g.
+ * because its writer retried the publish, is dropped instead of inserting the line twice.
+ *
+ * A batch that fails on a transient database error is retried from the stored offset. If the
+ * database rejects particular writes instead, the rest of the batch is applied around them and
+ * the rejected ones go to the {@link RetryPipeline}; malformed writes go to its dead-letter queue
+ * once the offset past them is stored, so a replay never dead-letters them twice.
+ */
+public class ReplicationLogApplier {
+
+    public interface Listener {
+        void onApplied(List<TextEntity> entries);
+
+        void onReplayProgress(long replayed, long lagMillis, boolean caughtUp);
+    }
+
+    private final int replicaId;
+    private final TextRepository repository;
+    private final ReplicationLog log;
+    private final RetryPipeline retries;
+    private final Listener listener;
+    private final ScheduledExecutorService scheduler;
+
+    private final List<TextEntity> batch = new ArrayList<>();
+    private final List<Delivery> batchDeliveries = new ArrayList<>();
+    private final List<Long> batchReceivedMicros = new ArrayList<>();
+    private final Set<String> batchWriteIds = new LinkedHashSet<>();
+    private final Map<Delivery, RuntimeException> batchMalformed = new LinkedHashMap<>();
+    private final DedupFilter dedup = new DedupFilter();
+    private final CommandTimers timers;
+    private final AtomicLong appliedCount = new AtomicLong();
+    private final AtomicLong duplicateCount = new AtomicLong();
+    private boolean dedupWarmed;
+    private volatile long lastAppliedOffset = -1;
+    private ReplicationLog.Subscription subscription;
+    private ScheduledFuture<?> flushTask;
+    private ScheduledFuture<?> pruneTask;
+    private long pendingOffset = -1;
+    private long pendingDeliveryTag = 0;
+    private long lastDeliveryAt;
+    private long lagMillis;
+    private long replayed;
+    private boolean catchingUp;
+
+    public ReplicationLogApplier(int replicaId, TextRepository repository, ReplicationLog log,
+                                 RetryPipeline retries, Listener listener) {
+        this.replicaId = replicaId;
+        this.repository = repository;
+        this.log = log;
+        this.retries = retries;
+        this.listener = listener;
+        this.timers = new CommandTimers(replicaId, "WRITE");
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "log-applier-" + replicaId);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public synchronized void start() throws IOException {
+        if (subscription != null) return;
+
+        // Never guess the offset: replaying from 0 onto a populated table would duplicate rows
+        long storedOffset;
+        try {
+            storedOffset = repository.getLastAppliedOffset();
+        } catch (RepositoryException e) {
+            throw new IOException("Replica " + replicaId + " could not read its replication log offset", e);
+        }
+
+        if (!dedupWarmed) {
+            try {
+                warmDedupFilter();
+            } catch (RepositoryException e) {
+                // An empty filter would answer NEW for writes applied just before the restart
+                throw new IOException("Replica " + replicaId + " could not load its recent write IDs", e);
+            }
+            dedupWarmed = true;
+        }
+
+        lastAppliedOffset = storedOffset;
+        long fromOffset = lastAppliedOffset + 1;
+        catchingUp = true;
+        replayed = 0;
+        lagMillis = 0;
+        lastDeliveryAt = System.currentTimeMillis();
+
+        LoggerUtil.log("Replica " + replicaId + " replaying replication log from offset " + fromOffset);
+        subscription = log.subscribe(fromOffset, this::onEntry);
+        retries.start(this::applyRetried);
+        flushTask = scheduler.scheduleWithFixedDelay(this::flushIfIdle,
+                AppConfig.REPLAY_FLUSH_INTERVAL, AppConfig.REPLAY_FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+        pruneTask = scheduler.scheduleWithFixedDelay(this::pruneAppliedWrites,
+                0, AppConfig.DEDUP_WINDOW, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (subscription == null) return;
+
+        subscription.cancel();
+        subscription = null;
+        flushTask.cancel(false);
+        pruneTask.cancel(false);
+        retries.stop();
+
+        // Uncommitted entries are replayed from the stored offset on the next start
+        batch.clear();
+        batchDeliveries.clear();
+        batchReceivedMicros.clear();
+        batchWriteIds.clear();
+        batchMalformed.clear();
+        pendingDeliveryTag = 0;
+        LoggerUtil.log("Replica " + replicaId + " stopped applying the replication log");
+    }
+
+    public synchronized boolean isCatchingUp() {
+        return subscription != null && catchingUp;
+    }
+
+    public long getAppliedCount() {
+        return appliedCount.get();
+    }
+
+    public long getLastAppliedOffset() {
+        return lastAppliedOffset;
+    }
+
+    // Publish-to-receive delay of the newest log entry; 0 once a caught-up replica has been idle
+    // for a heartbeat interval, since there is then nothing it is behind on
+    public synchronized long getLagMillis() {
+        if (subscription == null) return 0;
+        if (!catchingUp && System.currentTimeMillis() - lastDeliveryAt > AppConfig.HEARTBEAT_INTERVAL) return 0;
+        return lagMillis;
+    }
+
+    public long getDuplicateCount() {
+        return duplicateCount.get();
+    }
+
+    // IDs applied before a restart are only in the database; older ones are past the window anyway
+    private void warmDedupFilter() throws RepositoryException {
+        long since = System.currentTimeMillis() - 2 * AppConfig.DEDUP_WINDOW;
+        List<String> ids = repository.getWriteIdsAppliedSince(since);
+        ids.forEach(dedup::add);
+        LoggerUtil.log("Replica " + replicaId + " loaded " + ids.size() + " recent write IDs for deduplication");
+    }
+
+    // Runs once per filter window while applying, so applied_writes only keeps the IDs the filter can still match
+    private void pruneAppliedWrites() {
+        try {
+            repository.pruneAppliedWrites(System.currentTimeMillis() - 2 * AppConfig.DEDUP_WINDOW);
+        } catch (RepositoryException e) {
+            LoggerUtil.error("Replica " + replicaId + " failed to prune applied write IDs", e);
+        }
+    }
+
+    private boolean isDuplicate(String writeId) throws RepositoryException {
+        if (batchWriteIds.contains(writeId)) {
+            return true;
+        }
+        switch (dedup.check(writeId)) {
+            case NEW:
+                return false;
+            case DUPLICATE:
+                return true;
+            default:
+                // Bloom filter hit without an exact match: rare enough to settle in the database
+                return repository.isWriteApplied(writeId);
+        }
+    }
+
+    private synchronized void onEntry(long offset, Delivery delivery) throws IOException {
+        if (subscription == null) return; // Late delivery after stop()
+
+        lastDeliveryAt = System.currentTimeMillis();
+        Long hlc = timestampOf(delivery);
+        lagMillis = hlc != null ? Math.max(0, lastDeliveryAt - HybridLogicalClock.toEpochMillis(hlc)) : 0;
+        // While replaying, lag is how long the replica was away rather than how long writes queue
+        if (hlc != null && !catchingUp) {
+            timers.queue.recordMillis(lagMillis);
+        }
+
+        TextEntity entry = null;
+        try {
+            entry = CommandCodec.parseWrite(delivery.getBody(), rowTimestamp(hlc));
+        } catch (RuntimeException e) {
+            LoggerUtil.error("Replica " + replicaId + " skipping malformed write at offset " + offset, e);
+            batchMalformed.put(delivery, e);
+        }
+
+        String writeId = delivery.getProperties().getMessageId();
+        if (entry != null && writeId != null) {
+            boolean duplicate;
+            try {
+                duplicate = isDuplicate(writeId);
+            } catch (RepositoryException e) {
+                // Undecided: replay from the stored offset and ask again rather than risk a second insert
+                LoggerUtil.error("Replica " + replicaId + " could not check write " + writeId + ", retrying from last stored offset", e);
+                restartLater();
+                return;
+            }
+            if (duplicate) {
+                duplicateCount.incrementAndGet();
+                LoggerUtil.info("Replica {} dropping duplicate write {} at offset {}", replicaId, writeId, offset);
+                entry = null;
+            } else {
+                batchWriteIds.add(writeId);
+            }
+        }
+
+        if (entry != null) {
+            batch.add(entry);
+            batchDeliveries.add(delivery);
+            batchReceivedMicros.add(Trace.nowMicros());
+        }
+        pendingOffset = offset;
+        pendingDeliveryTag = delivery.getEnvelope().getDeliveryTag();
+
+        if (!catchingUp || batch.size() >= AppConfig.REPLAY_BATCH_SIZE || lagMillis < AppConfig.CAUGHT_UP_LAG_THRESHOLD) {
+            flush();
+        }
+    }
+
+    private synchronized void flushIfIdle() {
+        if (subscription == null) return;
+
+        long idle = System.currentTimeMillis() - lastDeliveryAt;
+        try {
+            if (pendingDeliveryTag != 0 && idle >= AppConfig.REPLAY_FLUSH_INTERVAL) {
+                flush();
+            } else if (catchingUp && pendingDeliveryTag == 0 && idle >= AppConfig.CAUGHT_UP_LAG_THRESHOLD) {
+                // Nothing more arrived, the log is drained
+                lagMillis = 0;
+                finishCatchUp();
+            }
+        } catch (IOException e) {
+            LoggerUtil.error("Replica " + replicaId + " failed to flush replication log batch", e);
+        }
+    }
+
+    private void flush() throws IOException {
+        if (pendingDeliveryTag == 0) return;
+
+        // Duplicates only advance the stored offset along with a write; malformed writes need it
+        // stored before they are dead-lettered
+        if (!batch.isEmpty()) {
+            List<String> writeIds = new ArrayList<>();
+            batchDeliveries.forEach(d -> writeIds.add(d.getProperties().getMessageId()));
+
+            List<TextEntity> applied = new ArrayList<>(batch);
+            Map<Integer, RepositoryException> rejected = Map.of();
+            long dbStart = System.nanoTime();
+            long dbStartMicros = Trace.nowMicros();
+            try {
+                repository.applyLogEntries(batch, writeIds, pendingOffset);
+            } catch (RepositoryException e) {
+                if (e.isTransient()) {
+                    LoggerUtil.error("Replica " + replicaId + " failed to apply log batch, retrying from last stored offset", e);
+                    restartLater();
+                    return;
+                }
+                // Some write in the batch is refused: apply the rest around it
+                try {
+                    rejected = repository.applyLogEntriesIsolated(batch, writeIds, pendingOffset);
+                } catch (RepositoryException retryFailure) {
+                    LoggerUtil.error("Replica " + replicaId + " failed to apply log batch, retrying from last stored offset", retryFailure);
+                    restartLater();
+                    return;
+                }
+            }
+
+            // One sample per batch transaction
+            timers.db.record(System.nanoTime() - dbStart);
+            if (!catchingUp) {
+                recordApplied(rejected, dbStartMicros);
+            }
+
+            Map<Delivery, RepositoryException> handOff = new LinkedHashMap<>();
+            for (Map.Entry<Integer, RepositoryException> failure : rejected.entrySet()) {
+                applied.remove(batch.get(failure.getKey()));
+                writeIds.set(failure.getKey(), null);
+                handOff.put(batchDeliveries.get(failure.getKey()), failure.getValue());
+            }
+
+            // The batch is committed: settle local state before anything else can fail, or the next
+            // flush would insert these rows again
+            appliedCount.addAndGet(applied.size());
+            lastAppliedOffset = pendingOffset;
+            if (catchingUp) replayed += applied.size();
+            writeIds.stream().filter(Objects::nonNull).forEach(dedup::add);
+            batch.clear();
+            batchDeliveries.clear();
+            batchReceivedMicros.clear();
+            batchWriteIds.clear();
+            if (!applied.isEmpty()) listener.onApplied(applied);
+
+            handOff.forEach(this::handOffRejected);
+        } else if (!batchMalformed.isEmpty()) {
+            try {
+                repository.storeLastAppliedOffset(pendingOffset);
+            } catch (RepositoryException e) {
+                LoggerUtil.error("Replica " + replicaId + " failed to store log offset, retrying from last stored offset", e);
+                restartLater();
+                return;
+            }
+            lastAppliedOffset = pendingOffset;
+        }
+        deadLetterMalformed();
+
+        subscription.ack(pendingDeliveryTag, true);
+        pendingDeliveryTag = 0;
+
+        if (catchingUp) {
+            if (lagMillis < AppConfig.CAUGHT_UP_LAG_THRESHOLD) {
+                finishCatchUp();
+            } else {
+                listener.onReplayProgress(replayed, lagMillis, false);
+            }
+        }
+    }
+
+    // Sends a write the database refused to the retry pipeline; its log offset is already committed,
+    // so if that fails too the write is dead-lettered, and as a last resort only logged
+    private void handOffRejected(Delivery delivery, RepositoryException error) {
+        try {
+            retries.retry(delivery.getBody(), delivery.getProperties(), 0, error);
+        } catch (IOException retryFailure) {
+            LoggerUtil.error("Replica " + replicaId + " could not schedule a retry, dead-lettering write " +
+                    delivery.getProperties().getMessageId(), retryFailure);
+            try {
+                retries.deadLetter(delivery.getBody(), delivery.getProperties(), error);
+            } catch (IOException deadLetterFailure) {
+                LoggerUtil.error("Replica " + replicaId + " lost write " + delivery.getProperties().getMessageId() + ": " +
+                        new String(delivery.getBody(), StandardCharsets.UTF_8), deadLetterFailure);
+            }
+        }
+    }
+
+    private void deadLetterMalformed() {
+        batchMalformed.forEach((delivery, error) -> {
+            try {
+                retries.deadLetter(delivery.getBody(), delivery.getProperties(), error);
+            } catch (IOException deadLetterFailure) {
+                LoggerUtil.error("Replica " + replicaId + " lost malformed write " + delivery.getProperties().getMessageId() + ": " +
+                        new String(delivery.getBody(), StandardCharsets.UTF_8), deadLetterFailure);
+            }
+        });
+        batchMalformed.clear();
+    }
+
+    // End-to-end latency and trace of every write the batch applied
+    private void recordApplied(Map<Integer, RepositoryException> rejected, long dbStartMicros) {
+        long now = System.currentTimeMillis();
+        long dbEndMicros = Trace.nowMicros();
+        for (int i = 0; i < batchDeliveries.size(); i++) {
+            if (rejected.containsKey(i)) continue;
+
+            Delivery delivery = batchDeliveries.get(i);
+            Long hlc = timestampOf(delivery);
+            if (hlc != null) {
+                timers.total.recordMillis(now - HybridLogicalClock.toEpochMillis(hlc));
+            }
+
+            long sent = Trace.stampOf(delivery.getProperties().getHeaders(), AppConfig.HEADER_TRACE_SENT);
+            if (sent >= 0) {
+                TraceSink.shared().record(new Trace(delivery.getProperties().getMessageId(), "WRITE")
+                        .hop(sent)
+                        .stage("queue", batchReceivedMicros.get(i))
+                        .stage("batch", dbStartMicros)
+                        .stage("db", dbEndMicros));
+            }
+        }
+    }
+
+    private void finishCatchUp() {
+        catchingUp = false;
+        LoggerUtil.log("Replica " + replicaId + " caught up with replication log (" + replayed + " writes replayed)");
+        listener.onReplayProgress(replayed, lagMillis, true);
+    }
+
+    private void restartLater() {
+        stop();
+        scheduler.schedule(() -> {
+            try {
+                start();
+            } catch (IOException e) {
+                LoggerUtil.error("Replica " + replicaId + " failed to resubscribe to replication log", e);
+                restartLater();
+            }
+        }, AppConfig.CONNECTION_RETRY_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    // Applies a write coming back from the retry pipeline; its log offset is long committed
+    private synchronized void applyRetried(Delivery delivery) throws Exception {
+        TextEntity entry = CommandCodec.parseWrite(delivery.getBody(), rowTimestamp(timestampOf(delivery)));
+        if (entry == null) {
+            throw new IllegalArgumentException("Not a write: " + new String(delivery.getBody(), StandardCharsets.UTF_8));
+        }
+
+        String writeId = delivery.getProperties().getMessageId();
+        if (writeId != null && isDuplicate(writeId)) {
+            duplicateCount.incrementAndGet();
+            return;
+        }
+
+        repository.applyWrite(entry, writeId);
+        if (writeId != null) dedup.add(writeId);
+        appliedCount.incrementAndGet();
+        listener.onApplied(List.of(entry));
+    }
+
+    // Writes keep the timestamp their writer assigned, so the row is identical on every replica
+    private static long rowTimestamp(Long hlc) {
+        if (hlc != null) {
+            HybridLogicalClock.shared().update(hlc);
+            return hlc;
+        }
+        // Unstamped (legacy) writes fall back to this replica's clock
+        return HybridLogicalClock.shared().now();
+    }
+
+    private static Long timestampOf(Delivery delivery) {
+        Map<String, Object> headers = delivery.getProperties().getHeaders();
+        Object hlc = headers != null ? headers.get(AppConfig.HEADER_HLC) : null;
+        return hlc instanceof Number ? ((Number) hlc).longValue() : null;
+    }
+}
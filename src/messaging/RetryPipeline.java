@@ -0,0 +1,178 @@
+package messaging;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.DeliverCallback;
+import com.rabbitmq.client.Delivery;
+import com.rabbitmq.client.GetResponse;
+import config.AppConfig;
+import database.RepositoryException;
+import utils.LoggerUtil;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Retry and dead-letter path for writes a replica failed to apply.
+ *
+ * A failed write is published to the delay queue for its next attempt
+ * (replica_retry_&lt;id&gt;_&lt;attempt&gt;), whose TTL doubles with every attempt. When the TTL
+ * runs out the broker dead-letters it into the replica's redrive queue, where it is applied
+ * again. Each attempt has its own queue so a long delay never holds up a shorter one behind it.
+ * After {@link AppConfig#RETRY_MAX_ATTEMPTS} retries, or straight away for writes that can never
+ * succeed (malformed messages), the write is parked in the dead-letter queue until someone
+ * re-drives it, e.g. with {@link launcher.DeadLetterConsole}.
+ */
+public class RetryPipeline {
+
+    public interface Handler {
+        // A RepositoryException is retried, any other exception dead-letters the write
+        void apply(Delivery delivery) throws Exception;
+    }
+
+    private final RabbitMQManager rmq;
+    private final int replicaId;
+    private Channel channel;
+    private String consumerTag;
+
+    public RetryPipeline(RabbitMQManager rmq, int replicaId) {
+        this.rmq = rmq;
+        this.replicaId = replicaId;
+    }
+
+    public static String redriveQueue(int replicaId) {
+        return AppConfig.REDRIVE_QUEUE_PREFIX + replicaId;
+    }
+
+    public static String deadLetterQueue(int replicaId) {
+        return AppConfig.DEAD_LETTER_QUEUE_PREFIX + replicaId;
+    }
+
+    private String retryQueue(int attempt) {
+        return AppConfig.RETRY_QUEUE_PREFIX + replicaId + "_" + attempt;
+    }
+
+    public synchronized void declare() throws IOException {
+        Channel ch = channel();
+        ch.queueDeclare(redriveQueue(replicaId), true, false, false, null);
+        ch.queueDeclare(deadLetterQueue(replicaId), true, false, false, null);
+
+        for (int attempt = 1; attempt <= AppConfig.RETRY_MAX_ATTEMPTS; attempt++) {
+            Map<String, Object> args = new HashMap<>();
+            args.put("x-message-ttl", AppConfig.RETRY_BASE_DELAY << (attempt - 1));
+            args.put("x-dead-letter-exchange", "");
+            args.put("x-dead-letter-routing-key", redriveQueue(replicaId));
+            ch.queueDeclare(retryQueue(attempt), true, false, false, args);
+        }
+        LoggerUtil.log("Retry pipeline declared for replica " + replicaId);
+    }
+
+    // Starts applying writes whose retry delay has expired
+    public synchronized void start(Handler handler) throws IOException {
+        if (consumerTag != null) return;
+
+        Channel ch = channel();
+        ch.basicQos(1);
+        DeliverCallback deliverCallback = (tag, delivery) -> {
+            try {
+                handler.apply(delivery);
+                LoggerUtil.log("Replica " + replicaId + " applied write on attempt " + (attemptOf(delivery.getProperties()) + 1));
+            } catch (RepositoryException e) {
+                retry(delivery.getBody(), delivery.getProperties(), attemptOf(delivery.getProperties()), e);
+            } catch (Exception e) {
+                deadLetter(delivery.getBody(), delivery.getProperties(), e);
+            }
+            ch.basicAck(delivery.getEnvelope().getDeliveryTag(), false);
+        };
+        consumerTag = ch.basicConsume(redriveQueue(replicaId), false, deliverCallback, tag -> {});
+    }
+
+    public synchronized void stop() {
+        if (consumerTag == null) return;
+        try {
+            channel.basicCancel(consumerTag);
+        } catch (Exception e) {
+            LoggerUtil.error("Failed to stop retry consumer for replica " + replicaId, e);
+        }
+        consumerTag = null;
+    }
+
+    // Schedules the attempt after the given one, or dead-letters the write once attempts run out
+    public synchronized void retry(byte[] body, AMQP.BasicProperties properties, int failedAttempt, Exception error) throws IOException {
+        int attempt = failedAttempt + 1;
+        if (attempt > AppConfig.RETRY_MAX_ATTEMPTS) {
+            deadLetter(body, properties, error);
+            return;
+        }
+
+        channel().basicPublish("", retryQueue(attempt), withAttempt(properties, attempt, error), body);
+        LoggerUtil.log("Replica " + replicaId + " will retry write in " + (AppConfig.RETRY_BASE_DELAY << (attempt - 1)) +
+                " ms (attempt " + attempt + "/" + AppConfig.RETRY_MAX_ATTEMPTS + "): " + error.getMessage());
+    }
+
+    public synchronized void deadLetter(byte[] body, AMQP.BasicProperties properties, Exception error) throws IOException {
+        channel().basicPublish("", deadLetterQueue(replicaId), withAttempt(properties, attemptOf(properties), error), body);
+        LoggerUtil.log("Replica " + replicaId + " dead-lettered write: " + error.getMessage());
+    }
+
+    // Moves every dead letter back to the redrive queue with a fresh set of attempts; returns how many moved
+    public synchronized int redriveDeadLetters() throws IOException {
+        Channel ch = channel();
+        int moved = 0;
+        GetResponse response;
+        while ((response = ch.basicGet(deadLetterQueue(replicaId), false)) != null) {
+            ch.basicPublish("", redriveQueue(replicaId), withAttempt(response.getProps(), 0, null), response.getBody());
+            ch.basicAck(response.getEnvelope().getDeliveryTag(), false);
+            moved++;
+        }
+        return moved;
+    }
+
+    public synchronized long getDeadLetterCount() throws IOException {
+        return channel().messageCount(deadLetterQueue(replicaId));
+    }
+
+    public synchronized void close() {
+        stop();
+        try {
+            if (channel != null && channel.isOpen()) {
+                channel.close();
+            }
+        } catch (Exception e) {
+            LoggerUtil.error("Failed to close retry channel for replica " + replicaId, e);
+        }
+    }
+
+    public static int attemptOf(AMQP.BasicProperties properties) {
+        Map<String, Object> headers = properties.getHeaders();
+        Object attempt = headers != null ? headers.get(AppConfig.HEADER_ATTEMPT) : null;
+        return attempt instanceof Number ? ((Number) attempt).intValue() : 0;
+    }
+
+    // Keeps the write ID and HLC stamp so a retried write is deduplicated and timestamped like the original
+    private static AMQP.BasicProperties withAttempt(AMQP.BasicProperties properties, int attempt, Exception error) {
+        Map<String, Object> headers = new HashMap<>();
+        Map<String, Object> original = properties.getHeaders();
+        if (original != null && original.containsKey(AppConfig.HEADER_HLC)) {
+            headers.put(AppConfig.HEADER_HLC, original.get(AppConfig.HEADER_HLC));
+        }
+        headers.put(AppConfig.HEADER_ATTEMPT, attempt);
+        if (error != null) {
+            headers.put(AppConfig.HEADER_ERROR, String.valueOf(error.getMessage()));
+        }
+
+        return new AMQP.BasicProperties.Builder()
+                .deliveryMode(2)
+                .messageId(properties.getMessageId())
+                .headers(headers)
+                .build();
+    }
+
+    private Channel channel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            channel = rmq.createChannel();
+        }
+        return channel;
+    }
+}
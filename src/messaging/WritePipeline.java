@@ -0,0 +1,218 @@
+package messaging;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import config.AppConfig;
+import metrics.LatencyHistogram;
+import metrics.MetricsRegistry;
+import utils.LoggerUtil;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publishes writes without making the caller wait for the broker. {@link #submit} queues a write
+ * and returns at once. A single sender thread publishes queued writes on a channel in confirm
+ * mode, keeping at most {@link AppConfig#WRITE_WINDOW} unconfirmed at a time. Each write's
+ * future completes when the broker confirms it, and fails on a nack or when the channel closes
+ * first. A full window only holds back the sender thread, so a bulk load streams at whatever
+ * rate the broker confirms.
+ */
+public class WritePipeline {
+    private static final LatencyHistogram confirmLatency = MetricsRegistry.shared().histogram("client_write_confirm_seconds",
+            "Time from publishing a write until the broker confirmed it");
+    private static final LongAdder confirmed = confirmCounter("ack");
+    private static final LongAdder nacked = confirmCounter("nack");
+    private static final LongAdder failed = confirmCounter("failed");
+
+    private static class Pending {
+        final CompletableFuture<Void> future;
+        final long sentNanos = System.nanoTime();
+
+        Pending(CompletableFuture<Void> future) {
+            this.future = future;
+        }
+    }
+
+    // A channel in confirm mode and its unconfirmed writes by publish sequence number. Every
+    // channel numbers from 1, so each keeps its own; only the sender thread adds, confirms remove
+    private static class ConfirmChannel {
+        final Channel channel;
+        final ConcurrentNavigableMap<Long, Pending> unconfirmed = new ConcurrentSkipListMap<>();
+
+        ConfirmChannel(Channel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private final RabbitMQManager rmq;
+    private final Semaphore window = new Semaphore(AppConfig.WRITE_WINDOW);
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ExecutorService sender = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "write-pipeline");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile ConfirmChannel current; // opened by the sender thread
+
+    public WritePipeline(RabbitMQManager rmq) {
+        this.rmq = rmq;
+        MetricsRegistry.shared().gauge("client_writes_in_flight", "Writes queued or awaiting a broker confirm", this::getPendingCount);
+    }
+
+    private static LongAdder confirmCounter(String result) {
+        return MetricsRegistry.shared().counter("client_write_confirms_total", "Write confirms by outcome", "result", result);
+    }
+
+    public CompletableFuture<Void> submit(String message) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        queued.incrementAndGet();
+        try {
+            sender.execute(new Send(message, future));
+        } catch (RuntimeException e) {
+            queued.decrementAndGet();
+            future.completeExceptionally(new IOException("Write pipeline is closed", e));
+        }
+        return future;
+    }
+
+    // Queued plus holding a window slot, across the current channel and any closing one
+    public int getPendingCount() {
+        return queued.get() + AppConfig.WRITE_WINDOW - window.availablePermits();
+    }
+
+    private class Send implements Runnable {
+        final String message;
+        final CompletableFuture<Void> future;
+
+        Send(String message, CompletableFuture<Void> future) {
+            this.message = message;
+            this.future = future;
+        }
+
+        @Override
+        public void run() {
+            send(message, future);
+        }
+    }
+
+    private void send(String message, CompletableFuture<Void> future) {
+        queued.decrementAndGet();
+        try {
+            window.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed.increment();
+            future.completeExceptionally(new IOException("Write pipeline is closed"));
+            return;
+        }
+
+        ConfirmChannel ch = null;
+        long sequence = -1;
+        try {
+            ch = confirmChannel();
+            byte[] body = message.getBytes(StandardCharsets.UTF_8);
+            sequence = ch.channel.getNextPublishSeqNo();
+            ch.unconfirmed.put(sequence, new Pending(future));
+            // Every write gets its own ID, so a replica drops it if the broker redelivers it
+            String exchange = RabbitMQManager.exchangeFor(body);
+            ch.channel.basicPublish(exchange, "", rmq.writeProperties(UUID.randomUUID().toString()), body);
+            RabbitMQManager.countPublished(exchange);
+        } catch (IOException | RuntimeException e) {
+            if (sequence < 0 || ch.unconfirmed.remove(sequence) != null) {
+                window.release();
+                failed.increment();
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private ConfirmChannel confirmChannel() throws IOException {
+        if (current == null || !current.channel.isOpen()) {
+            ConfirmChannel ch = new ConfirmChannel(rmq.createChannel());
+            ConcurrentNavigableMap<Long, Pending> unconfirmed = ch.unconfirmed;
+            ch.channel.confirmSelect();
+            ch.channel.addConfirmListener(new ConfirmListener() {
+                @Override
+                public void handleAck(long deliveryTag, boolean multiple) {
+                    settle(unconfirmed, deliveryTag, multiple, null);
+                }
+
+                @Override
+                public void handleNack(long deliveryTag, boolean multiple) {
+                    settle(unconfirmed, deliveryTag, multiple, new IOException("Broker rejected the write"));
+                }
+            });
+            // Nothing this channel published can be confirmed once it closes; other channels' writes are left alone
+            ch.channel.addShutdownListener(cause -> failUnconfirmed(unconfirmed, new IOException("Channel closed before the write was confirmed", cause)));
+            current = ch;
+        }
+        return current;
+    }
+
+    private void settle(ConcurrentNavigableMap<Long, Pending> unconfirmed, long deliveryTag, boolean multiple, IOException error) {
+        Map<Long, Pending> settled = multiple ? unconfirmed.headMap(deliveryTag, true) : null;
+        if (settled != null) {
+            for (Long sequence : settled.keySet()) {
+                complete(unconfirmed.remove(sequence), error);
+            }
+        } else {
+            complete(unconfirmed.remove(deliveryTag), error);
+        }
+    }
+
+    private void complete(Pending pending, IOException error) {
+        if (pending == null) return;
+        window.release();
+        if (error == null) {
+            confirmed.increment();
+            confirmLatency.record(System.nanoTime() - pending.sentNanos);
+            pending.future.complete(null);
+        } else {
+            nacked.increment();
+            pending.future.completeExceptionally(error);
+        }
+    }
+
+    private void failUnconfirmed(Map<Long, Pending> unconfirmed, IOException error) {
+        for (Long sequence : unconfirmed.keySet()) {
+            Pending pending = unconfirmed.remove(sequence);
+            if (pending != null) {
+                window.release();
+                failed.increment();
+                pending.future.completeExceptionally(error);
+            }
+        }
+    }
+
+    // Writes not yet confirmed fail; the caller decides whether to send them again
+    public void close() {
+        for (Runnable notSent : sender.shutdownNow()) {
+            queued.decrementAndGet();
+            failed.increment();
+            ((Send) notSent).future.completeExceptionally(new IOException("Write pipeline is closed"));
+        }
+        ConfirmChannel ch = current;
+        if (ch != null) {
+            failUnconfirmed(ch.unconfirmed, new IOException("Write pipeline is closed"));
+        }
+        MetricsRegistry.shared().removeGauge("client_writes_in_flight");
+        try {
+            if (ch != null && ch.channel.isOpen()) {
+                ch.channel.close();
+            }
+        } catch (Exception e) {
+            LoggerUtil.error("Failed to close write channel", e);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package metrics;
+
+/**
+ * The three latencies a replica tracks for one command: how long requests waited before the
+ * replica picked them up, how long the database took, and the whole time from publish to served.
+ * Queue and total time are measured from the requester's HLC stamp, so they have millisecond
+ * resolution and include clock skew between hosts.
+ */
+public class CommandTimers {
+    public final LatencyHistogram queue;
+    public final LatencyHistogram db;
+    public final LatencyHistogram total;
+
+    public CommandTimers(int replicaId, String command) {
+        MetricsRegistry metrics = MetricsRegistry.shared();
+        String[] labels = {"replica", String.valueOf(replicaId), "command", command};
+        queue = metrics.histogram("replica_queue_seconds",
+                "Time from a request's publish until the replica picks it up", labels);
+        db = metrics.histogram("replica_db_seconds",
+                "Time spent in the database per request (per batch transaction for writes)", labels);
+        total = metrics.histogram("replica_command_seconds",
+                "Time from a request's publish until the replica has served it", labels);
+    }
+}
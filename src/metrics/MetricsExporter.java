@@ -0,0 +1,201 @@
+package metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import tracing.Trace;
+import tracing.TraceSink;
+import utils.LoggerUtil;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Publishes the shared {@link MetricsRegistry} two ways: as a JMX MBean (replication:type=Metrics,
+ * for JConsole/VisualVM) and in Prometheus text format at http://localhost:&lt;port&gt;/metrics.
+ * The same server lists the process's slow traces, ranked by stage, at /traces.
+ * One exporter runs per process; the first {@link #start} call decides the port.
+ */
+public final class MetricsExporter {
+    private static final String[] QUANTILE_NAMES = {"p50", "p90", "p99", "p999"};
+    private static HttpServer server;
+
+    private MetricsExporter() {
+    }
+
+    // If the port is taken (e.g. a second client on the same host), an ephemeral one is used instead
+    public static synchronized void start(int port) {
+        if (server != null) return;
+
+        registerMBean();
+        try {
+            server = bind(port);
+        } catch (BindException e) {
+            try {
+                server = bind(0);
+            } catch (IOException retryFailure) {
+                LoggerUtil.error("Failed to start metrics endpoint", retryFailure);
+                return;
+            }
+        } catch (IOException e) {
+            LoggerUtil.error("Failed to start metrics endpoint", e);
+            return;
+        }
+        LoggerUtil.log("Metrics available at http://localhost:" + server.getAddress().getPort() + "/metrics");
+    }
+
+    public static synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    private static HttpServer bind(int port) throws IOException {
+        // Local scraping only
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.createContext("/metrics", exchange -> respond(exchange,
+                "text/plain; version=0.0.4; charset=utf-8", MetricsRegistry.shared().toPrometheusText()));
+        httpServer.createContext("/traces", exchange -> {
+            StringBuilder body = new StringBuilder(TraceSink.shared().report()).append('\n');
+            for (Trace trace : TraceSink.shared().getSlowTraces()) {
+                body.append(trace.toJson()).append('\n');
+            }
+            respond(exchange, "text/plain; charset=utf-8", body.toString());
+        });
+        httpServer.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        // The server's dispatcher thread inherits its daemon flag from the thread that starts it,
+        // so start it from a daemon thread; otherwise it keeps client JVMs alive after main returns
+        Thread starter = new Thread(httpServer::start, "metrics-http-start");
+        starter.setDaemon(true);
+        starter.start();
+        try {
+            starter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return httpServer;
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void registerMBean() {
+        try {
+            MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("replication:type=Metrics");
+            if (!mbeanServer.isRegistered(name)) {
+                mbeanServer.registerMBean(new RegistryMBean(), name);
+            }
+        } catch (Exception e) {
+            LoggerUtil.error("Failed to register metrics MBean", e);
+        }
+    }
+
+    // Read-only view of the registry: counters and gauges as longs, each histogram as
+    // "<series>.count", "<series>.maxMillis" and "<series>.p50Millis" ... "<series>.p999Millis"
+    private static class RegistryMBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Map<String, Object> metrics = MetricsRegistry.shared().snapshot();
+            Object metric = metrics.get(attribute);
+            if (metric instanceof LongAdder) return ((LongAdder) metric).sum();
+            if (metric instanceof LongSupplier) return ((LongSupplier) metric).getAsLong();
+
+            int dot = attribute.lastIndexOf('.');
+            Object histogram = dot > 0 ? metrics.get(attribute.substring(0, dot)) : null;
+            if (histogram instanceof LatencyHistogram) {
+                LatencyHistogram h = (LatencyHistogram) histogram;
+                String field = attribute.substring(dot + 1);
+                if (field.equals("count")) return h.getCount();
+                if (field.equals("maxMillis")) return h.getMaxNanos() / 1e6;
+                for (int i = 0; i < QUANTILE_NAMES.length; i++) {
+                    if (field.equals(QUANTILE_NAMES[i] + "Millis")) {
+                        return h.quantileNanos(MetricsRegistry.QUANTILES[i]) / 1e6;
+                    }
+                }
+            }
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                try {
+                    list.add(new Attribute(attribute, getAttribute(attribute)));
+                } catch (AttributeNotFoundException e) {
+                    // Series removed since the client listed them
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        // Rebuilt on every call so series registered later show up
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            MetricsRegistry.shared().snapshot().forEach((series, metric) -> {
+                if (metric instanceof LatencyHistogram) {
+                    attributes.add(attribute(series + ".count", "long"));
+                    attributes.add(attribute(series + ".maxMillis", "double"));
+                    for (String quantile : QUANTILE_NAMES) {
+                        attributes.add(attribute(series + "." + quantile + "Millis", "double"));
+                    }
+                } else {
+                    attributes.add(attribute(series, "long"));
+                }
+            });
+            return new MBeanInfo(getClass().getName(), "Replication system metrics",
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+
+        private static MBeanAttributeInfo attribute(String name, String type) {
+            return new MBeanAttributeInfo(name, type, name, true, false, false);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide set of named metrics: counters, gauges read on demand, and latency histograms.
+ * A metric is identified by its name plus label pairs, e.g.
+ * {@code histogram("replica_db_seconds", "...", "replica", "1", "command", "WRITE")}; asking
+ * again for the same name and labels returns the same instance, so callers look a metric up
+ * once and keep it in a field. {@link MetricsExporter} publishes the registry over HTTP and JMX.
+ */
+public class MetricsRegistry {
+    private static final MetricsRegistry SHARED = new MetricsRegistry();
+    static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    enum Type { COUNTER, GAUGE, SUMMARY }
+
+    // Metrics sharing a name, one per label set
+    static class Family {
+        final String name;
+        final String help;
+        final Type type;
+        final Map<String, Object> series = new ConcurrentHashMap<>();
+
+        Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private final Map<String, Family> families = new ConcurrentHashMap<>();
+
+    public static MetricsRegistry shared() {
+        return SHARED;
+    }
+
+    public LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) family(name, help, Type.COUNTER).series.computeIfAbsent(labelString(labels), k -> new LongAdder());
+    }
+
+    // A counter kept by some other object, read on demand; replaces any registered under the same name and labels
+    public void counter(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, Type.COUNTER).series.put(labelString(labels), value);
+    }
+
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) family(name, help, Type.SUMMARY).series.computeIfAbsent(labelString(labels), k -> new LatencyHistogram());
+    }
+
+    // Replaces any gauge already registered under the same name and labels
+    public void gauge(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, Type.GAUGE).series.put(labelString(labels), value);
+    }
+
+    // For gauges backed by an object that is going away
+    public void removeGauge(String name, String... labels) {
+        remove(name, labels);
+    }
+
+    // For counters read from an object that is going away
+    public void removeCounter(String name, String... labels) {
+        remove(name, labels);
+    }
+
+    private void remove(String name, String... labels) {
+        Family family = families.get(name);
+        if (family != null) {
+            family.series.remove(labelString(labels));
+        }
+    }
+
+    // Prometheus text exposition format (version 0.0.4); histograms are exported as summaries in seconds
+    public String toPrometheusText() {
+        StringBuilder out = new StringBuilder();
+        for (Family family : new TreeMap<>(families).values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type.name().toLowerCase()).append('\n');
+
+            for (Map.Entry<String, Object> series : new TreeMap<>(family.series).entrySet()) {
+                String labels = series.getKey();
+                Object metric = series.getValue();
+                if (metric instanceof LongAdder) {
+                    sample(out, family.name, labels, ((LongAdder) metric).sum());
+                } else if (metric instanceof LongSupplier) {
+                    sample(out, family.name, labels, ((LongSupplier) metric).getAsLong());
+                } else {
+                    LatencyHistogram histogram = (LatencyHistogram) metric;
+                    for (double quantile : QUANTILES) {
+                        String withQuantile = withLabel(labels, "quantile", String.valueOf(quantile));
+                        sample(out, family.name, withQuantile, seconds(histogram.quantileNanos(quantile)));
+                    }
+                    sample(out, family.name + "_sum", labels, seconds(histogram.getSumNanos()));
+                    sample(out, family.name + "_count", labels, histogram.getCount());
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    // Every series as "name{labels}" -> metric, for the JMX view
+    Map<String, Object> snapshot() {
+        Map<String, Object> all = new TreeMap<>();
+        families.values().forEach(family -> family.series.forEach((labels, metric) -> all.put(family.name + labels, metric)));
+        return all;
+    }
+
+    private Family family(String name, String help, Type type) {
+        Family family = families.computeIfAbsent(name, n -> new Family(n, help, type));
+        if (family.type != type) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+        }
+        return family;
+    }
+
+    // Label pairs rendered once, as they appear in the exposition format: {key="value",...}
+    private static String labelString(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be key/value pairs");
+        }
+        if (labels.length == 0) return "";
+
+        List<String> pairs = new ArrayList<>();
+        for (int i = 0; i < labels.length; i += 2) {
+            pairs.add(labels[i] + "=\"" + escape(labels[i + 1]) + "\"");
+        }
+        return "{" + String.join(",", pairs) + "}";
+    }
+
+    private static String withLabel(String labels, String key, String value) {
+        String pair = key + "=\"" + value + "\"";
+        return labels.isEmpty() ? "{" + pair + "}" : labels.substring(0, labels.length() - 1) + "," + pair + "}";
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, Object value) {
+        out.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+}
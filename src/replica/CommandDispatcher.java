@@ -0,0 +1,32 @@
+package replica;
+
+import com.rabbitmq.client.AMQP;
+import messaging.CommandCodec;
+import messaging.CommandCodec.Opcode;
+
+/**
+ * Table of command handlers indexed by opcode. The opcode is read from the raw message bytes
+ * by {@link CommandCodec}, so picking a handler costs one switch and an array lookup.
+ */
+public class CommandDispatcher {
+
+    public interface Handler {
+        void handle(byte[] body, AMQP.BasicProperties properties) throws Exception;
+    }
+
+    private final Handler[] handlers = new Handler[Opcode.values().length];
+
+    public CommandDispatcher on(Opcode opcode, Handler handler) {
+        handlers[opcode.ordinal()] = handler;
+        return this;
+    }
+
+    // Messages without a handler of their own go to the UNKNOWN handler
+    public void dispatch(byte[] body, AMQP.BasicProperties properties) throws Exception {
+        Handler handler = handlers[CommandCodec.opcodeOf(body).ordinal()];
+        if (handler == null) {
+            handler = handlers[Opcode.UNKNOWN.ordinal()];
+        }
+        handler.handle(body, properties);
+    }
+}
@@ -0,0 +1,429 @@
+package replica;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Delivery;
+import config.AppConfig;
+import database.TextEntity;
+import database.TextRepository;
+import messaging.CommandCodec;
+import messaging.CommandCodec.Opcode;
+import messaging.HeartbeatPublisher;
+import messaging.JsonStreamWriter;
+import messaging.RabbitMQManager;
+import messaging.ReadLane;
+import messaging.ReplicationLog;
+import messaging.ReplicationLogApplier;
+import messaging.RetryPipeline;
+import metrics.CommandTimers;
+import metrics.MetricsExporter;
+import metrics.MetricsRegistry;
+import org.json.JSONObject;
+import tracing.Trace;
+import utils.LoggerUtil;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A replica without any UI: serves reads from its queue on the {@link ReadLane}, applies writes
+ * from the {@link ReplicationLog} and heartbeats its load to clients. Both the headless
+ * {@link main.Replica} and the JavaFX {@link ui.ReplicaController} run one of these; whatever
+ * wants to follow along registers a {@link ReplicaObserver}.
+ */
+public class ReplicaEngine {
+    private final int replicaId;
+    private final TextRepository repository;
+    private final List<ReplicaObserver> observers = new CopyOnWriteArrayList<>();
+    private final AtomicLong receivedMessages = new AtomicLong();
+    private final AtomicLong processedMessages = new AtomicLong();
+    private final CommandDispatcher dispatcher = buildDispatcher();
+    private final Map<Opcode, CommandTimers> timers = new EnumMap<>(Opcode.class);
+    private final SearchIndex searchIndex = new SearchIndex();
+    // Hop timestamps of the request being served on this thread, echoed back in its reply
+    private final ThreadLocal<Map<String, Object>> traceHeaders = new ThreadLocal<>();
+
+    private RabbitMQManager rmq;
+    private ReadLane readLane;
+    private RetryPipeline retryPipeline;
+    private ReplicationLogApplier logApplier;
+    private HeartbeatPublisher heartbeat;
+    private volatile boolean running;
+    private volatile boolean faulty;
+
+    public ReplicaEngine(int replicaId) {
+        this(replicaId, new TextRepository(replicaId));
+    }
+
+    public ReplicaEngine(int replicaId, TextRepository repository) {
+        this.replicaId = replicaId;
+        this.repository = repository;
+        for (Opcode opcode : new Opcode[]{Opcode.READ_LAST, Opcode.READ_ALL, Opcode.READ_ALL_JSON, Opcode.STATUS, Opcode.SEARCH}) {
+            timers.put(opcode, new CommandTimers(replicaId, opcode.name()));
+        }
+    }
+
+    public void addObserver(ReplicaObserver observer) {
+        observers.add(observer);
+    }
+
+    public void removeObserver(ReplicaObserver observer) {
+        observers.remove(observer);
+    }
+
+    public void start() throws IOException, TimeoutException {
+        try {
+            MetricsExporter.start(AppConfig.METRICS_REPLICA_BASE_PORT + replicaId);
+            rmq = new RabbitMQManager();
+            rmq.setLocalReplicaId(replicaId);
+
+            // Create a durable queue for this replica
+            String queueName = AppConfig.QUEUE_PREFIX + replicaId;
+            rmq.declareQueue(queueName);
+
+            // The search index must hold what is already stored before the first SEARCH is served
+            loadSearchIndex();
+
+            // Reads are served on their own lane so they never wait behind writes
+            readLane = new ReadLane(rmq, replicaId);
+            readLane.start(queueName, this::serve);
+
+            // Writes come from the replication log, starting with whatever was missed while offline;
+            // the ones this replica fails to apply are retried with backoff, then dead-lettered
+            ReplicationLog replicationLog = new ReplicationLog(rmq);
+            replicationLog.declare();
+            retryPipeline = new RetryPipeline(rmq, replicaId);
+            retryPipeline.declare();
+            logApplier = new ReplicationLogApplier(replicaId, repository, replicationLog, retryPipeline,
+                    new ReplicationLogApplier.Listener() {
+                        @Override
+                        public void onApplied(List<TextEntity> entries) {
+                            processedMessages.addAndGet(entries.size());
+                            searchIndex.index(entries);
+                            observers.forEach(o -> o.onWritesApplied(entries));
+                        }
+
+                        @Override
+                        public void onReplayProgress(long replayed, long lagMillis, boolean caughtUp) {
+                            observers.forEach(o -> o.onReplayProgress(replayed, lagMillis, caughtUp));
+                            if (caughtUp) {
+                                notifyStatus(ReplicaObserver.Status.ONLINE, "Caught up with replication log");
+                            } else {
+                                notifyStatus(ReplicaObserver.Status.CATCHING_UP,
+                                        replayed + " replayed, " + lagMillis + " ms behind");
+                            }
+                        }
+                    });
+
+            // Let clients know this replica is alive and how loaded it is
+            heartbeat = new HeartbeatPublisher(rmq, replicaId, logApplier, readLane);
+            registerMetrics();
+            resume();
+            LoggerUtil.log(String.format("Replica %d is ready on queue %s", replicaId, queueName));
+        } catch (IOException | TimeoutException e) {
+            notifyStatus(ReplicaObserver.Status.CONNECTION_ERROR, e.getMessage());
+            throw e;
+        }
+    }
+
+    // Catches up on missed writes and starts heartbeating so clients route reads here again
+    public synchronized void resume() {
+        if (logApplier == null) return;
+
+        faulty = false;
+        running = true;
+        heartbeat.start();
+        try {
+            logApplier.start();
+            notifyStatus(ReplicaObserver.Status.CATCHING_UP, "Replaying missed writes from replication log");
+        } catch (IOException e) {
+            notifyError("Failed to subscribe to replication log", e);
+        }
+    }
+
+    // Stops serving and applying; the replica goes silent and clients route around it
+    public synchronized void stop() {
+        running = false;
+        if (logApplier != null) {
+            heartbeat.stop();
+            logApplier.stop();
+        }
+        notifyStatus(ReplicaObserver.Status.STOPPED, "Replica operation paused");
+    }
+
+    // Simulated breakdown: like stop(), but only resume() brings the replica back
+    public synchronized void breakDown() {
+        stop();
+        faulty = true;
+        notifyStatus(ReplicaObserver.Status.FAILED, "Replica has experienced a simulated breakdown");
+    }
+
+    public void close() {
+        stop();
+        unregisterMetrics();
+        if (readLane != null) readLane.stop();
+        if (retryPipeline != null) retryPipeline.close();
+        if (rmq != null) rmq.close();
+    }
+
+    private void loadSearchIndex() {
+        long start = System.nanoTime();
+        List<TextEntity> batch = new ArrayList<>();
+        repository.forEachLine((lineNumber, content, timestamp) -> {
+            batch.add(new TextEntity(lineNumber, content, timestamp));
+            if (batch.size() == AppConfig.REPLAY_BATCH_SIZE) {
+                searchIndex.index(batch);
+                batch.clear();
+            }
+        });
+        searchIndex.index(batch);
+        LoggerUtil.log(String.format("Replica %d indexed %d lines for search in %d ms", replicaId,
+                searchIndex.getLineCount(), (System.nanoTime() - start) / 1_000_000));
+    }
+
+    private void registerMetrics() {
+        MetricsRegistry metrics = MetricsRegistry.shared();
+        String id = String.valueOf(replicaId);
+        ReadLane lane = readLane;
+        ReplicationLogApplier applier = logApplier;
+        metrics.counter("replica_messages_received_total", "Requests received on the read lane", receivedMessages::get, "replica", id);
+        metrics.counter("replica_messages_processed_total", "Requests served plus writes applied", processedMessages::get, "replica", id);
+        metrics.counter("replica_read_slo_misses_total", "Reads served later than the read latency SLO", lane::getSloMisses, "replica", id);
+        metrics.counter("replica_writes_applied_total", "Writes applied from the replication log", applier::getAppliedCount, "replica", id);
+        metrics.counter("replica_duplicate_writes_total", "Writes dropped as already applied", applier::getDuplicateCount, "replica", id);
+    }
+
+    private void unregisterMetrics() {
+        MetricsRegistry metrics = MetricsRegistry.shared();
+        String id = String.valueOf(replicaId);
+        for (String name : new String[]{"replica_messages_received_total", "replica_messages_processed_total",
+                "replica_read_slo_misses_total", "replica_writes_applied_total", "replica_duplicate_writes_total"}) {
+            metrics.removeCounter(name, "replica", id);
+        }
+    }
+
+    public int getReplicaId() {
+        return replicaId;
+    }
+
+    public TextRepository getRepository() {
+        return repository;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public boolean isFaulty() {
+        return faulty;
+    }
+
+    public long getReceivedCount() {
+        return receivedMessages.get();
+    }
+
+    public long getProcessedCount() {
+        return processedMessages.get();
+    }
+
+    public ReplicationLogApplier getLogApplier() {
+        return logApplier;
+    }
+
+    private CommandDispatcher buildDispatcher() {
+        CommandDispatcher.Handler ignore = (body, properties) -> {};
+        return new CommandDispatcher()
+                .on(Opcode.READ_LAST, this::readLast)
+                .on(Opcode.READ_ALL, this::readAll)
+                .on(Opcode.READ_ALL_JSON, this::readAll)
+                .on(Opcode.STATUS, this::status)
+                .on(Opcode.SEARCH, this::search)
+                // Writes are applied from the replication log; only writers predating the write exchange send them here
+                .on(Opcode.WRITE, ignore)
+                .on(Opcode.WRITE_JSON, ignore)
+                .on(Opcode.UNKNOWN, (body, properties) -> {
+                    throw new IllegalArgumentException("Unknown command: " + new String(body, StandardCharsets.UTF_8));
+                });
+    }
+
+    // Runs on the read lane's threads
+    private void serve(Delivery delivery) throws IOException {
+        if (!running || faulty) return;
+
+        long startNanos = System.nanoTime();
+        long queuedMillis = ReadLane.millisSincePublish(delivery);
+        byte[] body = delivery.getBody();
+        Opcode opcode = CommandCodec.opcodeOf(body);
+        CommandTimers commandTimers = timers.get(opcode);
+        if (commandTimers != null) {
+            commandTimers.queue.recordMillis(queuedMillis);
+        }
+
+        Map<String, Object> trace = new HashMap<>();
+        trace.put(AppConfig.HEADER_TRACE_COMMAND, opcode.name());
+        trace.put(AppConfig.HEADER_TRACE_RECEIVED, Trace.nowMicros());
+        long sent = Trace.stampOf(delivery.getProperties().getHeaders(), AppConfig.HEADER_TRACE_SENT);
+        if (sent >= 0) {
+            trace.put(AppConfig.HEADER_TRACE_SENT, sent);
+        }
+        traceHeaders.set(trace);
+
+        receivedMessages.incrementAndGet();
+        if (!observers.isEmpty()) {
+            String message = new String(body, StandardCharsets.UTF_8);
+            observers.forEach(o -> o.onMessageReceived(message));
+        }
+
+        try {
+            dispatcher.dispatch(body, delivery.getProperties());
+        } catch (Exception e) {
+            // The requester gets an error response instead
+            String message = new String(body, StandardCharsets.UTF_8);
+            notifyError("Error processing message: " + message, e);
+
+            JSONObject errorResponse = new JSONObject();
+            errorResponse.put("replicaId", replicaId);
+            errorResponse.put("error", e.getMessage());
+            errorResponse.put("receivedMessage", message);
+            reply(errorResponse, delivery.getProperties());
+        } finally {
+            traceHeaders.remove();
+        }
+
+        if (commandTimers != null) {
+            commandTimers.total.record(queuedMillis * 1_000_000 + System.nanoTime() - startNanos);
+        }
+    }
+
+    // Records a request's time in the database, both in its command's histogram and its trace
+    private void recordDbTime(byte[] body, long startNanos) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        CommandTimers commandTimers = timers.get(CommandCodec.opcodeOf(body));
+        if (commandTimers != null) {
+            commandTimers.db.record(elapsedNanos);
+        }
+
+        Map<String, Object> trace = traceHeaders.get();
+        if (trace != null) {
+            long endMicros = Trace.nowMicros();
+            trace.put(AppConfig.HEADER_TRACE_DB_START, endMicros - elapsedNanos / 1000);
+            trace.put(AppConfig.HEADER_TRACE_DB_END, endMicros);
+        }
+    }
+
+    private void readLast(byte[] body, AMQP.BasicProperties properties) throws IOException {
+        long dbStart = System.nanoTime();
+        TextEntity lastLine = repository.getLastLine();
+        recordDbTime(body, dbStart);
+        JSONObject response = new JSONObject();
+        response.put("replicaId", replicaId);
+
+        if (lastLine != null) {
+            response.put("lineNumber", lastLine.getLineNumber());
+            response.put("content", lastLine.getContent());
+            response.put("timestamp", lastLine.getTimestamp());
+        } else {
+            response.put("empty", true);
+        }
+
+        reply(response, properties);
+        notifyServed(lastLine != null ? "Sent last line: " + lastLine : "Sent empty response - no data");
+    }
+
+    // Rows are encoded as they are read, into the serving thread's reusable buffer.
+    // replicaId is written before lines so readers can tag each line as they decode it.
+    private void readAll(byte[] body, AMQP.BasicProperties properties) throws IOException {
+        JsonStreamWriter json = JsonStreamWriter.forThread();
+        json.beginObject()
+                .name("replicaId").value(replicaId)
+                .name("lines").beginArray();
+
+        // Encoding happens while rows stream in, so it counts towards the DB time here
+        long dbStart = System.nanoTime();
+        int count = repository.forEachLine((lineNumber, content, timestamp) -> json.beginObject()
+                .name("lineNumber").value(lineNumber)
+                .name("content").value(content)
+                .name("timestamp").value(timestamp)
+                .endObject());
+        recordDbTime(body, dbStart);
+
+        json.endArray().endObject();
+        reply(json.toByteArray(), properties);
+        notifyServed("Read all lines (" + count + " found)");
+    }
+
+    // Served from the in-memory index; only the requested page of matching lines is sent
+    private void search(byte[] body, AMQP.BasicProperties properties) throws IOException {
+        CommandCodec.SearchRequest request = CommandCodec.parseSearch(body);
+        long lookupStart = System.nanoTime();
+        SearchIndex.Page page = searchIndex.search(request.getTerms(), request.getOffset(), request.getLimit());
+        recordDbTime(body, lookupStart);
+
+        JsonStreamWriter json = JsonStreamWriter.forThread();
+        json.beginObject()
+                .name("replicaId").value(replicaId)
+                .name("total").value(page.getTotal())
+                .name("offset").value(request.getOffset())
+                .name("results").beginArray();
+        for (SearchIndex.Hit hit : page.getHits()) {
+            json.beginObject()
+                    .name("lineNumber").value(hit.getLineNumber())
+                    .name("content").value(hit.getContent())
+                    .name("timestamp").value(hit.getTimestamp())
+                    .name("score").value(hit.getScore())
+                    .endObject();
+        }
+        json.endArray().endObject();
+
+        reply(json.toByteArray(), properties);
+        notifyServed("Search for \"" + request.getTerms() + "\" (" + page.getTotal() + " found)");
+    }
+
+    private void status(byte[] body, AMQP.BasicProperties properties) throws IOException {
+        // Send status info about this replica
+        JSONObject response = new JSONObject();
+        response.put("replicaId", replicaId);
+        response.put("status", "online");
+        response.put("queueName", AppConfig.QUEUE_PREFIX + replicaId);
+        response.put("timestamp", System.currentTimeMillis());
+        long dbStart = System.nanoTime();
+        response.put("lineCount", repository.getAllLines().size());
+        recordDbTime(body, dbStart);
+
+        reply(response, properties);
+        notifyServed("Sent status response");
+    }
+
+    // Requests published without a reply queue are served but not answered
+    private void reply(JSONObject response, AMQP.BasicProperties properties) throws IOException {
+        reply(response.toString().getBytes(StandardCharsets.UTF_8), properties);
+    }
+
+    private void reply(byte[] response, AMQP.BasicProperties properties) throws IOException {
+        if (properties.getReplyTo() != null) {
+            rmq.publishResponse(response, properties.getReplyTo(), properties.getCorrelationId(), traceHeaders.get());
+        }
+    }
+
+    private void notifyStatus(ReplicaObserver.Status status, String detail) {
+        LoggerUtil.log("Replica " + replicaId + " " + status + ": " + detail);
+        observers.forEach(o -> o.onStatusChanged(status, detail));
+    }
+
+    private void notifyServed(String summary) {
+        processedMessages.incrementAndGet();
+        observers.forEach(o -> o.onRequestServed(summary));
+    }
+
+    private void notifyError(String message, Exception e) {
+        LoggerUtil.error("Replica " + replicaId + ": " + message, e);
+        observers.forEach(o -> o.onError(message, e));
+    }
+}
@@ -0,0 +1,34 @@
+package replica;
+
+import database.TextEntity;
+
+import java.util.List;
+
+/**
+ * Receives what a {@link ReplicaEngine} is doing. Callbacks run on the engine's own threads
+ * (read lane, log applier), so an observer that updates a UI must hand the work over to the
+ * UI thread itself and should return quickly.
+ */
+public interface ReplicaObserver {
+
+    enum Status {
+        ONLINE,
+        CATCHING_UP,
+        STOPPED,
+        FAILED,
+        CONNECTION_ERROR
+    }
+
+    default void onStatusChanged(Status status, String detail) {}
+
+    default void onMessageReceived(String message) {}
+
+    // Human readable outcome of a read or status request
+    default void onRequestServed(String summary) {}
+
+    default void onWritesApplied(List<TextEntity> entries) {}
+
+    default void onReplayProgress(long replayed, long lagMillis, boolean caughtUp) {}
+
+    default void onError(String message, Exception e) {}
+}
@@ -0,0 +1,167 @@
+package replica;
+
+import database.TextEntity;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index behind the SEARCH command: term to postings (line number and how
+ * often the term occurs in it). Only the newest version of each line is indexed, like READ LAST
+ * picks by timestamp. The write path keeps it current after each applied batch, so a search
+ * touches only the postings of its own terms. Hits are ranked by tf-idf, ties by line number.
+ */
+public class SearchIndex {
+
+    public static class Hit {
+        private final int lineNumber;
+        private final String content;
+        private final long timestamp;
+        private final double score;
+
+        Hit(int lineNumber, String content, long timestamp, double score) {
+            this.lineNumber = lineNumber;
+            this.content = content;
+            this.timestamp = timestamp;
+            this.score = score;
+        }
+
+        public int getLineNumber() { return lineNumber; }
+        public String getContent() { return content; }
+        public long getTimestamp() { return timestamp; }
+        public double getScore() { return score; }
+    }
+
+    // One page of ranked hits, and how many lines matched in all
+    public static class Page {
+        private final int total;
+        private final List<Hit> hits;
+
+        Page(int total, List<Hit> hits) {
+            this.total = total;
+            this.hits = hits;
+        }
+
+        public int getTotal() { return total; }
+        public List<Hit> getHits() { return hits; }
+    }
+
+    private static class Line {
+        final String content;
+        final long timestamp;
+        final Map<String, Integer> terms;
+
+        Line(String content, long timestamp, Map<String, Integer> terms) {
+            this.content = content;
+            this.timestamp = timestamp;
+            this.terms = terms;
+        }
+    }
+
+    // Best first: higher score, then lower line number
+    private static final Comparator<Map.Entry<Integer, Double>> RANKING =
+            Map.Entry.<Integer, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey());
+
+    private final Map<Integer, Line> lines = new HashMap<>();
+    private final Map<String, Map<Integer, Integer>> postings = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Versions older than the one already indexed for their line are ignored
+    public void index(List<TextEntity> entries) {
+        List<Map<String, Integer>> terms = new ArrayList<>(entries.size());
+        for (TextEntity entry : entries) {
+            terms.add(termFrequencies(entry.getContent()));
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < entries.size(); i++) {
+                TextEntity entry = entries.get(i);
+                index(entry.getLineNumber(), entry.getContent(), entry.getTimestamp(), terms.get(i));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void index(int lineNumber, String content, long timestamp, Map<String, Integer> terms) {
+        Line previous = lines.get(lineNumber);
+        if (previous != null) {
+            if (previous.timestamp > timestamp) return;
+            for (String term : previous.terms.keySet()) {
+                Map<Integer, Integer> list = postings.get(term);
+                list.remove(lineNumber);
+                if (list.isEmpty()) postings.remove(term);
+            }
+        }
+
+        lines.put(lineNumber, new Line(content, timestamp, terms));
+        terms.forEach((term, count) -> postings.computeIfAbsent(term, k -> new HashMap<>()).put(lineNumber, count));
+    }
+
+    public Page search(String query, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            Map<Integer, Double> scores = new HashMap<>();
+            for (String term : termFrequencies(query).keySet()) {
+                Map<Integer, Integer> list = postings.get(term);
+                if (list == null) continue;
+                double idf = Math.log(1 + (double) lines.size() / list.size());
+                list.forEach((line, count) -> scores.merge(line, (1 + Math.log(count)) * idf, Double::sum));
+            }
+
+            // Only the best offset + limit are ever ordered; the head of the heap is the worst kept.
+            // Summed as longs, since a huge offset would otherwise wrap negative and drop every hit
+            int keep = (int) Math.min((long) offset + limit, scores.size());
+            PriorityQueue<Map.Entry<Integer, Double>> best = new PriorityQueue<>(RANKING.reversed());
+            for (Map.Entry<Integer, Double> score : scores.entrySet()) {
+                best.add(score);
+                if (best.size() > keep) best.poll();
+            }
+            List<Map.Entry<Integer, Double>> ranked = new ArrayList<>(best);
+            ranked.sort(RANKING);
+
+            List<Hit> hits = new ArrayList<>();
+            for (int i = offset; i < ranked.size(); i++) {
+                Map.Entry<Integer, Double> score = ranked.get(i);
+                Line line = lines.get(score.getKey());
+                hits.add(new Hit(score.getKey(), line.content, line.timestamp, score.getValue()));
+            }
+            return new Page(scores.size(), hits);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getLineCount() {
+        lock.readLock().lock();
+        try {
+            return lines.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Lowercased runs of letters and digits, with how often each occurs
+    static Map<String, Integer> termFrequencies(String text) {
+        Map<String, Integer> terms = new HashMap<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inTerm = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inTerm && start < 0) {
+                start = i;
+            } else if (!inTerm && start >= 0) {
+                terms.merge(text.substring(start, i).toLowerCase(Locale.ROOT), 1, Integer::sum);
+                start = -1;
+            }
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,118 @@
+package tracing;
+
+import config.AppConfig;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One request's path through the system, cut into stages (queue, db, reply, ...) by the hop
+ * timestamps each process stamps into the AMQP headers. Timestamps are wall-clock microseconds,
+ * so a stage that spans two hosts also contains their clock difference.
+ */
+public class Trace {
+
+    public static class Span {
+        private final String stage;
+        private final long startMicros;
+        private final long durationMicros;
+
+        Span(String stage, long startMicros, long durationMicros) {
+            this.stage = stage;
+            this.startMicros = startMicros;
+            this.durationMicros = durationMicros;
+        }
+
+        public String getStage() { return stage; }
+        public long getStartMicros() { return startMicros; }
+        public long getDurationMicros() { return durationMicros; }
+    }
+
+    private final String traceId;
+    private final String command;
+    private final List<Span> spans = new ArrayList<>();
+    private long lastMicros = -1;
+    private long startMicros;
+
+    public Trace(String traceId, String command) {
+        this.traceId = traceId;
+        this.command = command;
+    }
+
+    public static long nowMicros() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000 + now.getNano() / 1000;
+    }
+
+    // Hop timestamp carried in a header, or -1 when the sender did not stamp it
+    public static long stampOf(Map<String, Object> headers, String header) {
+        Object value = headers != null ? headers.get(header) : null;
+        return value instanceof Number ? ((Number) value).longValue() : -1;
+    }
+
+    // Reads the request's hop stamps from its reply and cuts them into stages
+    public static Trace fromReply(String traceId, Map<String, Object> headers, long receivedMicros) {
+        Object command = headers != null ? headers.get(AppConfig.HEADER_TRACE_COMMAND) : null;
+        Trace trace = new Trace(traceId, command != null ? command.toString() : "UNKNOWN");
+        trace.hop(stampOf(headers, AppConfig.HEADER_TRACE_SENT));
+        trace.stage("queue", stampOf(headers, AppConfig.HEADER_TRACE_RECEIVED));
+        trace.stage("dispatch", stampOf(headers, AppConfig.HEADER_TRACE_DB_START));
+        trace.stage("db", stampOf(headers, AppConfig.HEADER_TRACE_DB_END));
+        trace.stage("encode", stampOf(headers, AppConfig.HEADER_TRACE_REPLIED));
+        trace.stage("return", receivedMicros);
+        return trace;
+    }
+
+    // The first timestamp; stages are measured from here on
+    public Trace hop(long micros) {
+        if (micros >= 0) {
+            lastMicros = micros;
+            startMicros = micros;
+        }
+        return this;
+    }
+
+    // Ends a stage at the given timestamp; missing hops (-1) fold into the next stage
+    public Trace stage(String stage, long endMicros) {
+        if (endMicros < 0 || lastMicros < 0) return this;
+        spans.add(new Span(stage, lastMicros, Math.max(0, endMicros - lastMicros)));
+        lastMicros = endMicros;
+        return this;
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public List<Span> getSpans() {
+        return Collections.unmodifiableList(spans);
+    }
+
+    public long getTotalMicros() {
+        return spans.isEmpty() ? 0 : lastMicros - startMicros;
+    }
+
+    public JSONObject toJson() {
+        JSONArray stages = new JSONArray();
+        for (Span span : spans) {
+            stages.put(new JSONObject()
+                    .put("stage", span.stage)
+                    .put("startMicros", span.startMicros)
+                    .put("durationMicros", span.durationMicros));
+        }
+        return new JSONObject()
+                .put("traceId", traceId)
+                .put("command", command)
+                .put("totalMicros", getTotalMicros())
+                .put("spans", stages);
+    }
+}
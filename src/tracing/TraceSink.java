@@ -0,0 +1,107 @@
+package tracing;
+
+import config.AppConfig;
+import metrics.MetricsRegistry;
+import utils.LoggerUtil;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Where a process's finished traces go. Every trace feeds the per-stage latency histograms
+ * (trace_stage_seconds{command,stage}); traces slower than {@link AppConfig#TRACE_SLOW_THRESHOLD}
+ * are also kept in a small ring, appended as JSON lines to the file named by -Dtrace.file if
+ * set, and used to rank which stages the tail latency is spent in.
+ */
+public class TraceSink {
+    private static final TraceSink SHARED = new TraceSink(System.getProperty("trace.file"));
+
+    private final Deque<Trace> slowTraces = new ArrayDeque<>();
+    private final String file;
+    private Writer writer;
+
+    TraceSink(String file) {
+        this.file = file;
+    }
+
+    public static TraceSink shared() {
+        return SHARED;
+    }
+
+    public void record(Trace trace) {
+        if (trace.getSpans().isEmpty()) return;
+
+        MetricsRegistry metrics = MetricsRegistry.shared();
+        for (Trace.Span span : trace.getSpans()) {
+            metrics.histogram("trace_stage_seconds", "Time spent in each stage of a traced request",
+                    "command", trace.getCommand(), "stage", span.getStage()).record(span.getDurationMicros() * 1000);
+        }
+
+        if (trace.getTotalMicros() >= AppConfig.TRACE_SLOW_THRESHOLD * 1000) {
+            keepSlow(trace);
+        }
+    }
+
+    private synchronized void keepSlow(Trace trace) {
+        slowTraces.addLast(trace);
+        if (slowTraces.size() > AppConfig.TRACE_SLOW_KEEP) {
+            slowTraces.removeFirst();
+        }
+
+        if (file == null) return;
+        try {
+            if (writer == null) {
+                writer = new FileWriter(file, true);
+            }
+            writer.write(trace.toJson().toString());
+            writer.write('\n');
+            writer.flush();
+        } catch (IOException e) {
+            LoggerUtil.error("Failed to write trace to " + file, e);
+        }
+    }
+
+    public synchronized List<Trace> getSlowTraces() {
+        return new ArrayList<>(slowTraces);
+    }
+
+    // Stages of the kept slow traces of a command, by total time spent in them, largest first
+    public synchronized List<Map.Entry<String, Long>> rankStages(String command) {
+        Map<String, Long> totals = new HashMap<>();
+        for (Trace trace : slowTraces) {
+            if (!trace.getCommand().equals(command)) continue;
+            for (Trace.Span span : trace.getSpans()) {
+                totals.merge(span.getStage(), span.getDurationMicros(), Long::sum);
+            }
+        }
+        List<Map.Entry<String, Long>> ranking = new ArrayList<>(totals.entrySet());
+        ranking.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        return ranking;
+    }
+
+    // Human-readable ranking for every command with slow traces
+    public synchronized String report() {
+        Map<String, Integer> counts = new HashMap<>();
+        slowTraces.forEach(trace -> counts.merge(trace.getCommand(), 1, Integer::sum));
+
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Integer> command : counts.entrySet()) {
+            List<Map.Entry<String, Long>> ranking = rankStages(command.getKey());
+            long total = ranking.stream().mapToLong(Map.Entry::getValue).sum();
+            sb.append(command.getKey()).append(": ").append(command.getValue())
+                    .append(" slow request(s), time spent in\n");
+            for (Map.Entry<String, Long> stage : ranking) {
+                sb.append(String.format("  %-10s %8.1f ms  %5.1f%%%n", stage.getKey(),
+                        stage.getValue() / 1000.0, total == 0 ? 0 : stage.getValue() * 100.0 / total));
+            }
+        }
+        return sb.toString();
+    }
+}
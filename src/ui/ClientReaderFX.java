@@ -13,6 +13,8 @@ import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 import messaging.RabbitMQManager;
+import metrics.MetricsExporter;
+import utils.HybridLogicalClock;
 import utils.LoggerUtil;
 import org.json.JSONObject;
 
@@ -22,18 +24,21 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 public class ClientReaderFX extends Application {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS")
+        .withZone(ZoneId.systemDefault());
     private TextArea output;
     private ListView<String> replicaResponsesList;
     private RabbitMQManager rmq;
+    private CompletableFuture<String> inFlight;
     
     @Override
     public void start(Stage stage) {
         try {
+            MetricsExporter.start(AppConfig.METRICS_CLIENT_PORT);
             rmq = new RabbitMQManager();
+            rmq.startMembership();
         } catch (Exception e) {
             LoggerUtil.error("Failed to initialize RabbitMQ", e);
             showError("Failed to connect to message broker: " + e.getMessage());
@@ -80,137 +85,126 @@ public class ClientReaderFX extends Application {
         stage.show();
     }
 
+    // Never waits on the FX thread: the reply is parsed on the response executor and the result
+    // pushed to the UI. Reading again cancels the read still in flight.
     private void readLastLine() {
+        if (inFlight != null) {
+            inFlight.cancel(false);
+        }
         output.clear();
         replicaResponsesList.getItems().clear();
         output.setText("Querying replicas...");
         
         try {
-            CompletableFuture<String> future = rmq.publishWithResponse(AppConfig.MSG_READ_LAST);
-            
-            // Process responses
-            List<JSONObject> responses = new ArrayList<>();
-            List<JSONObject> errorResponses = new ArrayList<>();
-            
-            // Find the most recent response
-            JSONObject mostRecent = null;
-            long mostRecentTimestamp = 0;
-            
-            long startTime = System.currentTimeMillis();
-            long elapsedTime = 0;
+            // Completes with the replica's reply, or with null once the read's adaptive deadline passes
+            CompletableFuture<String> future = rmq.publishRead(AppConfig.MSG_READ_LAST);
+            inFlight = future;
+            future.thenAcceptAsync(response -> showResponse(future, response), rmq.getResponseExecutor())
+                .exceptionally(e -> {
+                    if (future.isCancelled()) return null;
+                    LoggerUtil.error("Error reading last line", e instanceof Exception ? (Exception) e : new RuntimeException(e));
+                    showOnFx(future, () -> {
+                        output.setText("Error: " + e.getMessage());
+                        output.setStyle("-fx-text-fill: red;");
+                    });
+                    return null;
+                });
+        } catch (Exception e) {
+            LoggerUtil.error("Error reading last line", e);
+            output.setText("Error: " + e.getMessage());
+            output.setStyle("-fx-text-fill: red;");
+        }
+    }
+
+    // Runs on the response executor
+    private void showResponse(CompletableFuture<String> read, String response) {
+        // Process responses
+        List<JSONObject> responses = new ArrayList<>();
+        List<JSONObject> errorResponses = new ArrayList<>();
+        
+        // Find the most recent response
+        JSONObject mostRecent = null;
+
+        if (response != null) {
+            JSONObject json = new JSONObject(response);
             
-            while (elapsedTime < AppConfig.REPLICA_RESPONSE_TIMEOUT) {
-                try {
-                    String response = future.get(AppConfig.RESPONSE_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
-                    if (response != null) {
-                        JSONObject json = new JSONObject(response);
-                        
-                        // Check if this is an error response
-                        if (json.has("error")) {
-                            errorResponses.add(json);
-                            Platform.runLater(() -> {
-                                replicaResponsesList.getItems().add(String.format(
-                                    "❌ Error from Replica %d: %s",
-                                    json.getInt("replicaId"),
-                                    json.getString("error")
-                                ));
-                            });
-                            continue;
-                        }
-                        
-                        // Skip empty responses but add them to the list
-                        if (json.optBoolean("empty", false)) {
-                            responses.add(json);
-                            Platform.runLater(() -> {
-                                replicaResponsesList.getItems().add(String.format(
-                                    "Replica %d: No data available",
-                                    json.getInt("replicaId")
-                                ));
-                            });
-                            continue;
-                        }
-                        
-                        responses.add(json);
-                        long timestamp = json.getLong("timestamp");
-                        if (timestamp > mostRecentTimestamp) {
-                            mostRecentTimestamp = timestamp;
-                            mostRecent = json;
-                        }
-                        
-                        // Add to responses list
-                        Platform.runLater(() -> {
-                            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm:ss.SSS")
-                                .withZone(ZoneId.systemDefault());
-                            String timeStr = formatter.format(Instant.ofEpochMilli(timestamp));
-                            
-                            replicaResponsesList.getItems().add(String.format(
-                                "Replica %d: Line %d [%s] - %s",
-                                json.getInt("replicaId"),
-                                json.getInt("lineNumber"),
-                                timeStr,
-                                json.getString("content")
-                            ));
-                        });
-                    }
-                } catch (TimeoutException e) {
-                    // This is expected, continue checking
-                }
-                
-                elapsedTime = System.currentTimeMillis() - startTime;
+            if (json.has("error")) {
+                // Error response
+                errorResponses.add(json);
+                String line = String.format(
+                    "❌ Error from Replica %d: %s",
+                    json.getInt("replicaId"),
+                    json.getString("error")
+                );
+                showOnFx(read, () -> replicaResponsesList.getItems().add(line));
+            } else if (json.optBoolean("empty", false)) {
+                // Empty responses are added to the list but carry no line
+                responses.add(json);
+                String line = String.format(
+                    "Replica %d: No data available",
+                    json.getInt("replicaId")
+                );
+                showOnFx(read, () -> replicaResponsesList.getItems().add(line));
+            } else {
+                responses.add(json);
+                mostRecent = json;
+                String timeStr = TIME_FORMAT.format(Instant.ofEpochMilli(
+                    HybridLogicalClock.toEpochMillis(json.getLong("timestamp"))));
                 
-                // Early completion if we have received responses from all replicas
-                // or if we have received error responses from all non-responding replicas
-                if (responses.size() + errorResponses.size() >= 2) { // Assuming at least 2 replicas
-                    break;
-                }
+                // Add to responses list
+                String line = String.format(
+                    "Replica %d: Line %d [%s] - %s",
+                    json.getInt("replicaId"),
+                    json.getInt("lineNumber"),
+                    timeStr,
+                    json.getString("content")
+                );
+                showOnFx(read, () -> replicaResponsesList.getItems().add(line));
             }
+        }
+        
+        final int totalResponses = responses.size();
+        final int totalErrors = errorResponses.size();
+        
+        if (mostRecent != null) {
+            String timeStr = TIME_FORMAT.format(Instant.ofEpochMilli(
+                HybridLogicalClock.toEpochMillis(mostRecent.getLong("timestamp"))));
             
-            final int totalResponses = responses.size();
-            final int totalErrors = errorResponses.size();
+            String statusMsg = String.format(
+                "Most recent line (from replica %d):\nLine %d: %s\nWritten at: %s\n\n" +
+                "Received %d successful response(s)\n" +
+                "Received %d error response(s)",
+                mostRecent.getInt("replicaId"),
+                mostRecent.getInt("lineNumber"),
+                mostRecent.getString("content"),
+                timeStr,
+                totalResponses,
+                totalErrors
+            );
             
-            if (mostRecent != null) {
-                final JSONObject finalMostRecent = mostRecent;
-                Platform.runLater(() -> {
-                    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm:ss.SSS")
-                        .withZone(ZoneId.systemDefault());
-                    String timeStr = formatter.format(Instant.ofEpochMilli(finalMostRecent.getLong("timestamp")));
-                    
-                    String statusMsg = String.format(
-                        "Most recent line (from replica %d):\nLine %d: %s\nWritten at: %s\n\n" +
-                        "Received %d successful response(s)\n" +
-                        "Received %d error response(s)",
-                        finalMostRecent.getInt("replicaId"),
-                        finalMostRecent.getInt("lineNumber"),
-                        finalMostRecent.getString("content"),
-                        timeStr,
-                        totalResponses,
-                        totalErrors
-                    );
-                    
-                    output.setText(statusMsg);
-                    output.setStyle("-fx-text-fill: " + (totalErrors > 0 ? "orange" : "black") + ";");
-                });
-            } else {
-                Platform.runLater(() -> {
-                    String errorMsg = totalErrors > 0 ?
-                        String.format("No valid responses received. %d replica(s) reported errors.", totalErrors) :
-                        "No responses received from any replicas after " + 
-                        (AppConfig.REPLICA_RESPONSE_TIMEOUT / 1000.0) + " seconds";
-                    
-                    output.setText(errorMsg);
-                    output.setStyle("-fx-text-fill: red;");
-                });
-            }
+            showOnFx(read, () -> {
+                output.setText(statusMsg);
+                output.setStyle("-fx-text-fill: " + (totalErrors > 0 ? "orange" : "black") + ";");
+            });
+        } else {
+            String errorMsg = totalErrors > 0 ?
+                String.format("No valid responses received. %d replica(s) reported errors.", totalErrors) :
+                "No responses received from any replicas";
             
-        } catch (Exception e) {
-            LoggerUtil.error("Error reading last line", e);
-            Platform.runLater(() -> {
-                output.setText("Error: " + e.getMessage());
+            showOnFx(read, () -> {
+                output.setText(errorMsg);
                 output.setStyle("-fx-text-fill: red;");
             });
         }
     }
 
+    // Drops updates from a read that has since been replaced by a newer one
+    private void showOnFx(CompletableFuture<String> read, Runnable update) {
+        Platform.runLater(() -> {
+            if (read == inFlight) update.run();
+        });
+    }
+
     private void showError(String message) {
         Alert alert = new Alert(Alert.AlertType.ERROR);
         alert.setTitle("Error");
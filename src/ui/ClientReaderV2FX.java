@@ -2,6 +2,7 @@ package ui;
 
 import config.AppConfig;
 import database.TextEntity;
+import javafx.animation.PauseTransition;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
@@ -12,9 +13,11 @@ import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
+import javafx.util.Duration;
+import messaging.JsonStreamReader;
 import messaging.RabbitMQManager;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import metrics.MetricsExporter;
+import utils.HybridLogicalClock;
 import utils.LoggerUtil;
 
 import java.time.Instant;
@@ -22,8 +25,10 @@ import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ClientReaderV2FX extends Application {
 
@@ -31,23 +36,63 @@ public class ClientReaderV2FX extends Application {
     private Label statusLabel;
     private ProgressBar progressBar;
     private Button refreshButton;
+    private ComboBox<String> viewSelector;
+    private BorderPane root;
     private RabbitMQManager rmq;
-    private Map<Integer, List<LineItem>> replicaData = new HashMap<>();
+    // One map per fetch, filled on the response executor; replies to an older fetch hold a
+    // stale map and are dropped
+    private volatile Map<Integer, List<LineItem>> replicaData = new ConcurrentHashMap<>();
+    private CompletableFuture<List<String>> inFlight;
+    // Replies arrive on the RabbitMQ consumer thread; their UI updates are coalesced per pulse
+    private final UiUpdateBus uiBus = new UiUpdateBus();
+    // Rebuilt off the FX thread after each reply; the table only ever reads a finished index
+    private volatile ConflictIndex conflictIndex = ConflictIndex.EMPTY;
+    private final ExecutorService indexer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "conflict-index");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean indexQueued = new AtomicBoolean();
+    // Content filter: typing restarts the debounce, the search itself runs on the indexer thread
+    private static final long FILTER_DEBOUNCE_MILLIS = 150;
+    private final PauseTransition filterDebounce = new PauseTransition(Duration.millis(FILTER_DEBOUNCE_MILLIS));
+    private volatile String filterQuery = "";
+    private BitSet filterMatches; // FX thread; matches of filterQuery in conflictIndex, null without a filter
+    // Last search, indexer thread only; a query extending it only re-checks its matches
+    private ConflictIndex searchedIndex;
+    private String searchedQuery;
+    private BitSet searchedMatches;
+    // Newest index built, indexer thread only
+    private ConflictIndex builtIndex = ConflictIndex.EMPTY;
+    private Map<Integer, List<LineItem>> builtData;
+    // Diff view: pairwise diffs of the shown index, built on the indexer thread when first viewed
+    private static final String DIFF_VIEW = "Diff";
+    private VBox diffPane;
+    private ComboBox<Integer> diffLeft;
+    private ComboBox<Integer> diffRight;
+    private Label diffSummary;
+    private ListView<DiffRows.Row> diffList;
+    private ReplicaDiff replicaDiff = ReplicaDiff.EMPTY; // FX thread
+    private ConflictIndex diffedIndex; // indexer thread only
+    private ReplicaDiff builtDiff = ReplicaDiff.EMPTY; // indexer thread only
 
     public static class LineItem {
+        private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS")
+                .withZone(ZoneId.systemDefault());
+
         private final Integer lineNumber;
         private final String content;
         private final String timestamp;
+        private final long hlc;
         private final Integer replicaId;
 
         public LineItem(Integer lineNumber, String content, Long timestamp, Integer replicaId) {
             this.lineNumber = lineNumber;
             this.content = content;
+            this.hlc = timestamp;
 
             // Format timestamp
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS")
-                    .withZone(ZoneId.systemDefault());
-            this.timestamp = formatter.format(Instant.ofEpochMilli(timestamp));
+            this.timestamp = TIMESTAMP_FORMAT.format(Instant.ofEpochMilli(HybridLogicalClock.toEpochMillis(timestamp)));
 
             this.replicaId = replicaId;
         }
@@ -55,20 +100,30 @@ public class ClientReaderV2FX extends Application {
         public Integer getLineNumber() { return lineNumber; }
         public String getContent() { return content; }
         public String getTimestamp() { return timestamp; }
+        public long getHlc() { return hlc; }
         public Integer getReplicaId() { return replicaId; }
+
+        // Writer-assigned HLC timestamps are identical on every replica, so this picks the
+        // same version no matter which replica answered first; content breaks exact ties
+        public boolean isNewerThan(LineItem other) {
+            if (hlc != other.hlc) return hlc > other.hlc;
+            return content.compareTo(other.content) > 0;
+        }
     }
 
     @Override
     public void start(Stage stage) {
         try {
+            MetricsExporter.start(AppConfig.METRICS_CLIENT_PORT);
             rmq = new RabbitMQManager();
+            rmq.startMembership();
         } catch (Exception e) {
             LoggerUtil.error("Failed to initialize RabbitMQ", e);
             showError("Failed to connect to message broker: " + e.getMessage());
             return;
         }
 
-        BorderPane root = new BorderPane();
+        root = new BorderPane();
         root.setPadding(new Insets(15));
 
         // Top section
@@ -78,6 +133,7 @@ public class ClientReaderV2FX extends Application {
         // Center - Table view
         contentTable = createContentTable();
         root.setCenter(contentTable);
+        diffPane = createDiffPane();
 
         // Bottom - Status bar
         HBox statusBar = createStatusBar();
@@ -87,9 +143,12 @@ public class ClientReaderV2FX extends Application {
         stage.setTitle("TextSync Reader V2");
         stage.setScene(scene);
         stage.setOnCloseRequest(e -> {
+            uiBus.stop();
+            indexer.shutdownNow();
             if (rmq != null) rmq.close();
         });
         stage.show();
+        uiBus.start();
 
         // Perform initial data fetch
         fetchDataFromReplicas();
@@ -109,8 +168,8 @@ public class ClientReaderV2FX extends Application {
         refreshButton.setPrefWidth(150);
         refreshButton.setOnAction(e -> fetchDataFromReplicas());
 
-        ComboBox<String> viewSelector = new ComboBox<>();
-        viewSelector.getItems().addAll("All Lines", "Latest Only", "Conflicts Only");
+        viewSelector = new ComboBox<>();
+        viewSelector.getItems().addAll("All Lines", "Latest Only", "Conflicts Only", DIFF_VIEW);
         viewSelector.setValue("All Lines");
         viewSelector.setPrefWidth(150);
         viewSelector.setOnAction(e -> updateTableView(viewSelector.getValue()));
@@ -118,9 +177,8 @@ public class ClientReaderV2FX extends Application {
         TextField filterField = new TextField();
         filterField.setPromptText("Filter by content...");
         filterField.setPrefWidth(200);
-        filterField.textProperty().addListener((obs, oldVal, newVal) -> {
-            filterTableContent(newVal);
-        });
+        filterDebounce.setOnFinished(e -> filterTableContent(filterField.getText()));
+        filterField.textProperty().addListener((obs, oldVal, newVal) -> filterDebounce.playFromStart());
 
         HBox.setHgrow(filterField, Priority.ALWAYS);
         controlsBox.getChildren().addAll(refreshButton, viewSelector, new Label("Filter:"), filterField);
@@ -162,21 +220,7 @@ public class ClientReaderV2FX extends Application {
                     return;
                 }
 
-                // Check if this row represents a conflicting line
-                boolean isConflict = false;
-                for (List<LineItem> replicaItems : replicaData.values()) {
-                    for (LineItem otherItem : replicaItems) {
-                        if (otherItem.getLineNumber().equals(item.getLineNumber()) &&
-                                !otherItem.getReplicaId().equals(item.getReplicaId()) &&
-                                !otherItem.getContent().equals(item.getContent())) {
-                            isConflict = true;
-                            break;
-                        }
-                    }
-                    if (isConflict) break;
-                }
-
-                if (isConflict) {
+                if (conflictIndex.isConflict(item)) {
                     setStyle("-fx-background-color: #ffecb3;"); // Light amber for conflicts
                 } else {
                     setStyle("");
@@ -187,6 +231,53 @@ public class ClientReaderV2FX extends Application {
         return table;
     }
 
+    private VBox createDiffPane() {
+        diffLeft = new ComboBox<>();
+        diffRight = new ComboBox<>();
+        diffLeft.setOnAction(e -> showDiffRows());
+        diffRight.setOnAction(e -> showDiffRows());
+        diffSummary = new Label();
+
+        HBox controls = new HBox(10);
+        controls.setAlignment(javafx.geometry.Pos.CENTER_LEFT);
+        controls.getChildren().addAll(new Label("Compare replica"), diffLeft, new Label("with replica"), diffRight, diffSummary);
+
+        diffList = new ListView<>();
+        diffList.setPlaceholder(new Label("No differences"));
+        // Fixed height, so the list never has to measure rows it is not showing
+        diffList.setFixedCellSize(22);
+        diffList.setCellFactory(lv -> new ListCell<DiffRows.Row>() {
+            @Override
+            protected void updateItem(DiffRows.Row row, boolean empty) {
+                super.updateItem(row, empty);
+                if (empty || row == null) {
+                    setText(null);
+                    setStyle("");
+                    return;
+                }
+
+                setText(row.getText());
+                switch (row.getKind()) {
+                    case HEADER:
+                        setStyle("-fx-font-family: monospace; -fx-font-weight: bold; -fx-background-color: #e3f2fd;");
+                        break;
+                    case REMOVED:
+                        setStyle("-fx-font-family: monospace; -fx-background-color: #ffebee;"); // Light red
+                        break;
+                    case ADDED:
+                        setStyle("-fx-font-family: monospace; -fx-background-color: #e8f5e9;"); // Light green
+                        break;
+                    default:
+                        setStyle("-fx-font-family: monospace;");
+                }
+            }
+        });
+
+        VBox pane = new VBox(10, controls, diffList);
+        VBox.setVgrow(diffList, Priority.ALWAYS);
+        return pane;
+    }
+
     private HBox createStatusBar() {
         HBox statusBar = new HBox(10);
         statusBar.setPadding(new Insets(10, 0, 0, 0));
@@ -203,149 +294,190 @@ public class ClientReaderV2FX extends Application {
         return statusBar;
     }
 
+    // Never waits on the FX thread: replies are parsed on the response executor and shown as they
+    // arrive. Refreshing again cancels the fetch still in flight.
     private void fetchDataFromReplicas() {
+        if (inFlight != null) {
+            inFlight.cancel(false);
+        }
+
         // Reset data and UI state
-        replicaData.clear();
+        Map<Integer, List<LineItem>> data = new ConcurrentHashMap<>();
+        replicaData = data;
+        conflictIndex = ConflictIndex.EMPTY;
+        filterMatches = null;
         contentTable.getItems().clear();
-        refreshButton.setDisable(true);
+        replicaDiff = ReplicaDiff.EMPTY;
+        showDiff();
         progressBar.setVisible(true);
         progressBar.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
         statusLabel.setText("Querying replicas...");
 
         try {
-            // Send READ_ALL command via a custom implementation
-            CompletableFuture<String> future = createCustomReadAllRequest();
-
-            // Process responses
-            long startTime = System.currentTimeMillis();
-            long elapsedTime = 0;
-            int replicaCount = 0;
-
-            while (elapsedTime < AppConfig.REPLICA_RESPONSE_TIMEOUT) {
-                try {
-                    String response = future.get(AppConfig.RESPONSE_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
-                    if (response != null) {
-                        JSONObject jsonResponse = new JSONObject(response);
-
-                        // Handle error response
-                        if (jsonResponse.has("error")) {
-                            Platform.runLater(() -> {
-                                statusLabel.setText("Error from Replica " + jsonResponse.getInt("replicaId") +
-                                        ": " + jsonResponse.getString("error"));
-                            });
-                            continue;
-                        }
-
-                        // Process successful response with data
-                        if (jsonResponse.has("replicaId") && jsonResponse.has("lines")) {
-                            int replicaId = jsonResponse.getInt("replicaId");
-                            JSONArray linesArray = jsonResponse.getJSONArray("lines");
-                            List<LineItem> replicaLines = new ArrayList<>();
-
-                            for (int i = 0; i < linesArray.length(); i++) {
-                                JSONObject line = linesArray.getJSONObject(i);
-                                LineItem item = new LineItem(
-                                        line.getInt("lineNumber"),
-                                        line.getString("content"),
-                                        line.getLong("timestamp"),
-                                        replicaId
-                                );
-                                replicaLines.add(item);
-                            }
-
-                            replicaData.put(replicaId, replicaLines);
-                            replicaCount++;
-
-                            // Update UI with progress
-                            final int currentCount = replicaCount;
-                            Platform.runLater(() -> {
-                                statusLabel.setText("Received data from " + currentCount + " replica(s)");
-                                updateTableView("All Lines");
-                            });
-                        }
+            // Completes once every live replica has answered or the deadline passes
+            CompletableFuture<List<String>> fetch = createCustomReadAllRequest(data);
+            inFlight = fetch;
+            fetch.thenRun(() -> {
+                int replicaCount = data.size();
+                // Own key, so a late reply's status update cannot replace hiding the progress bar
+                uiBus.update("fetch-done", () -> {
+                    if (data != replicaData) return;
+                    progressBar.setVisible(false);
+                    if (replicaCount > 0) {
+                        statusLabel.setText("Received data from " + replicaCount + " replica(s)");
+                    } else {
+                        statusLabel.setText("No responses received from any replicas");
                     }
-                } catch (TimeoutException e) {
-                    // This is expected, continue checking
-                }
-
-                elapsedTime = System.currentTimeMillis() - startTime;
-            }
-
-            // Finalize UI update
-            final int finalReplicaCount = replicaCount;
-            Platform.runLater(() -> {
-                refreshButton.setDisable(false);
-                progressBar.setVisible(false);
-
-                if (finalReplicaCount > 0) {
-                    statusLabel.setText("Received data from " + finalReplicaCount + " replica(s)");
-                } else {
-                    statusLabel.setText("No responses received from any replicas");
-                }
+                });
             });
-
         } catch (Exception e) {
             LoggerUtil.error("Error fetching data from replicas", e);
-            Platform.runLater(() -> {
-                refreshButton.setDisable(false);
-                progressBar.setVisible(false);
-                statusLabel.setText("Error: " + e.getMessage());
-                showError("Failed to fetch data: " + e.getMessage());
-            });
+            progressBar.setVisible(false);
+            statusLabel.setText("Error: " + e.getMessage());
+            showError("Failed to fetch data: " + e.getMessage());
         }
     }
 
-    private CompletableFuture<String> createCustomReadAllRequest() throws Exception {
+    private CompletableFuture<List<String>> createCustomReadAllRequest(Map<Integer, List<LineItem>> data) throws Exception {
         // Create a custom READ_ALL request that expects a JSON response
-        // This extends the standard READ_ALL command to return structured data
+        // This extends the standard READ_ALL command to return structured data.
+        // Comparing replicas is an explicit consistency check, so unlike READ LAST it stays a broadcast
         String customCommand = AppConfig.MSG_READ_ALL + "_JSON";
-        return rmq.publishWithResponse(customCommand);
+        return rmq.publishToAll(customCommand, response -> handleReadAllResponse(response, data));
     }
 
-    private void updateTableView(String viewMode) {
-        ObservableList<LineItem> allItems = FXCollections.observableArrayList();
-        Map<Integer, LineItem> latestItems = new HashMap<>();
-        Set<LineItem> conflictItems = new HashSet<>();
-
-        // Collect all items and identify latest versions
-        for (Map.Entry<Integer, List<LineItem>> entry : replicaData.entrySet()) {
-            int replicaId = entry.getKey();
-            List<LineItem> lines = entry.getValue();
-
-            for (LineItem item : lines) {
-                allItems.add(item);
-
-                // Track latest version by comparing timestamps
-                LineItem existing = latestItems.get(item.getLineNumber());
-                if (existing == null) {
-                    latestItems.put(item.getLineNumber(), item);
-                } else {
-                    // Compare timestamps (formatted strings won't work directly)
-                    if (item.timestamp.compareTo(existing.timestamp) > 0) {
-                        latestItems.put(item.getLineNumber(), item);
-                    }
+    // Called on the response executor for every replica that answers.
+    // Lines are decoded straight into LineItems; replicas send replicaId ahead of lines.
+    private void handleReadAllResponse(String response, Map<Integer, List<LineItem>> data) {
+        if (data != replicaData) return;
+        try {
+            JsonStreamReader json = new JsonStreamReader(response);
+            Integer replicaId = null;
+            String error = null;
+            List<LineItem> replicaLines = null;
+
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "replicaId":
+                        replicaId = json.nextInt();
+                        break;
+                    case "error":
+                        error = json.nextString();
+                        break;
+                    case "lines":
+                        if (replicaId == null) {
+                            throw new IllegalArgumentException("Response lists lines before its replicaId");
+                        }
+                        replicaLines = readLines(json, replicaId);
+                        break;
+                    default:
+                        json.skipValue();
+                }
+            }
+            json.endObject();
+
+            // Handle error response
+            if (error != null) {
+                String message = "Error from Replica " + replicaId + ": " + error;
+                uiBus.update("status", () -> {
+                    if (data == replicaData) statusLabel.setText(message);
+                });
+                return;
+            }
 
-                    // Check for content conflict
-                    if (!item.getContent().equals(existing.getContent())) {
-                        conflictItems.add(item);
-                        conflictItems.add(existing);
-                    }
+            // Process successful response with data
+            if (replicaLines != null) {
+                data.put(replicaId, replicaLines);
+
+                // Update UI with progress; replies arriving while an index is queued share its rebuild
+                final int currentCount = data.size();
+                uiBus.update("status", () -> {
+                    if (data == replicaData) statusLabel.setText("Received data from " + currentCount + " replica(s)");
+                });
+                rebuildConflictIndex();
+            }
+        } catch (Exception e) {
+            LoggerUtil.error("Ignoring malformed replica response", e);
+        }
+    }
+
+    private List<LineItem> readLines(JsonStreamReader json, int replicaId) {
+        List<LineItem> lines = new ArrayList<>();
+        json.beginArray();
+        while (json.hasNext()) {
+            int lineNumber = 0;
+            String content = "";
+            long timestamp = 0;
+
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "lineNumber":
+                        lineNumber = json.nextInt();
+                        break;
+                    case "content":
+                        content = json.nextString();
+                        break;
+                    case "timestamp":
+                        timestamp = json.nextLong();
+                        break;
+                    default:
+                        json.skipValue();
                 }
             }
+            json.endObject();
+            lines.add(new LineItem(lineNumber, content, timestamp, replicaId));
         }
+        json.endArray();
+        return lines;
+    }
 
-        switch (viewMode) {
-            case "Latest Only":
-                contentTable.setItems(FXCollections.observableArrayList(latestItems.values()));
-                break;
-            case "Conflicts Only":
-                contentTable.setItems(FXCollections.observableArrayList(conflictItems));
-                break;
-            case "All Lines":
-            default:
-                contentTable.setItems(allItems);
-                break;
+    // Builds the index for the data received so far and shows it in the current view
+    private void rebuildConflictIndex() {
+        if (!indexQueued.compareAndSet(false, true)) return;
+        indexer.execute(() -> {
+            // Cleared before reading replicaData, so a reply landing during the build queues another
+            indexQueued.set(false);
+            builtData = replicaData;
+            builtIndex = ConflictIndex.build(builtData);
+            publishIndex();
+        });
+    }
+
+    // Indexer thread: hands the newest index and the current filter's matches in it to the table.
+    // Both builds and searches end here, so whichever ran last decides what is shown.
+    private void publishIndex() {
+        Map<Integer, List<LineItem>> data = builtData;
+        ConflictIndex index = builtIndex;
+        String query = filterQuery;
+        BitSet matches = query.isEmpty() ? null : search(index, query);
+        uiBus.update("table", () -> {
+            if (data != replicaData) return;
+            conflictIndex = index;
+            filterMatches = matches;
+            updateTableView(viewSelector.getValue());
+        });
+    }
+
+    private BitSet search(ConflictIndex index, String query) {
+        boolean narrows = index == searchedIndex && query.contains(searchedQuery);
+        BitSet matches = index.getContentIndex().search(query, narrows ? searchedMatches : null);
+        searchedIndex = index;
+        searchedQuery = query;
+        searchedMatches = matches;
+        return matches;
+    }
+
+    private void updateTableView(String viewMode) {
+        if (DIFF_VIEW.equals(viewMode)) {
+            root.setCenter(diffPane);
+            ConflictIndex index = conflictIndex;
+            indexer.execute(() -> publishDiff(index));
+            return;
         }
+        root.setCenter(contentTable);
+        contentTable.setItems(FXCollections.observableArrayList(conflictIndex.view(viewMode, filterMatches)));
 
         // Sort by line number
         contentTable.getSortOrder().clear();
@@ -354,23 +486,57 @@ public class ClientReaderV2FX extends Application {
         contentTable.sort();
     }
 
-    private void filterTableContent(String filter) {
-        if (filter == null || filter.isEmpty()) {
-            // Reset to current view mode
-            updateTableView("All Lines");
-            return;
+    // Indexer thread: diffs the replicas in index unless that was already done, and shows the result
+    private void publishDiff(ConflictIndex index) {
+        if (index != diffedIndex) {
+            builtDiff = ReplicaDiff.build(index.getAllItems());
+            diffedIndex = index;
         }
+        ReplicaDiff diff = builtDiff;
+        uiBus.update("diff", () -> {
+            if (index != conflictIndex) return;
+            replicaDiff = diff;
+            showDiff();
+        });
+    }
 
-        String lowercaseFilter = filter.toLowerCase();
-        ObservableList<LineItem> filteredItems = FXCollections.observableArrayList();
+    // Offers the replicas of the current diff, keeping the chosen pair where it still exists
+    private void showDiff() {
+        List<Integer> ids = replicaDiff.getReplicaIds();
+        Integer left = diffLeft.getValue();
+        Integer right = diffRight.getValue();
+        if (!diffLeft.getItems().equals(ids)) {
+            diffLeft.getItems().setAll(ids);
+            diffRight.getItems().setAll(ids);
+        }
+        if (left == null || !ids.contains(left)) left = ids.isEmpty() ? null : ids.get(0);
+        if (right == null || !ids.contains(right)) right = ids.size() > 1 ? ids.get(1) : left;
+        diffLeft.setValue(left);
+        diffRight.setValue(right);
+        showDiffRows();
+    }
 
-        for (LineItem item : contentTable.getItems()) {
-            if (item.getContent().toLowerCase().contains(lowercaseFilter)) {
-                filteredItems.add(item);
-            }
+    private void showDiffRows() {
+        Integer left = diffLeft.getValue();
+        Integer right = diffRight.getValue();
+        if (left == null || right == null || replicaDiff.getReplicaIds().size() < 2) {
+            diffList.setItems(FXCollections.observableArrayList());
+            diffSummary.setText("Needs data from at least two replicas");
+            return;
         }
 
-        contentTable.setItems(filteredItems);
+        // Rows are made as the list scrolls to them, so this is cheap however large the documents
+        DiffRows rows = replicaDiff.rows(left, right);
+        diffList.setItems(FXCollections.observableList(rows));
+        diffSummary.setText(rows.getBlockCount() == 0
+                ? "Replicas " + left + " and " + right + " hold the same document"
+                : rows.getBlockCount() + " hunk(s), " + rows.getRemovedLines() + " line(s) removed, " +
+                  rows.getAddedLines() + " added");
+    }
+
+    private void filterTableContent(String filter) {
+        filterQuery = TrigramIndex.normalize(filter);
+        indexer.execute(this::publishIndex);
     }
 
     private void showError(String message) {
@@ -12,18 +12,58 @@ import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.stage.Stage;
+import config.AppConfig;
 import messaging.RabbitMQManager;
+import messaging.WritePipeline;
+import metrics.MetricsExporter;
 import utils.LoggerUtil;
 
+import java.time.LocalTime;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class ClientWriterFX extends Application {
+    private static final int HISTORY_LIMIT = 500;
+
+    // One row of the history: a single write, or a bulk send tracked as a whole.
+    // Counts are updated from confirm callbacks; the list is refreshed once per pulse.
+    private static class HistoryEntry {
+        final String time = LocalTime.now().toString().substring(0, 8);
+        final String lines;
+        final int total;
+        final AtomicInteger confirmed = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        volatile String lastError;
+
+        HistoryEntry(String lines, int total) {
+            this.lines = lines;
+            this.total = total;
+        }
+
+        @Override
+        public String toString() {
+            int ok = confirmed.get();
+            int bad = failed.get();
+            if (ok + bad < total) {
+                String progress = total > 1 ? ok + "/" + total + " confirmed" : "awaiting confirm";
+                return "[" + time + "] SENDING: " + lines + " (" + progress + ")";
+            }
+            if (bad == 0) {
+                return "[" + time + "] SUCCESS: Sent " + lines + (total > 1 ? " (" + ok + " confirmed)" : "");
+            }
+            String counts = total > 1 ? " (" + ok + " confirmed, " + bad + " failed)" : "";
+            return "[" + time + "] ERROR: Failed to send " + lines + counts + " - " + lastError;
+        }
+    }
 
-    private final ObservableList<String> messageHistory = FXCollections.observableArrayList();
+    private final ObservableList<HistoryEntry> messageHistory = FXCollections.observableArrayList();
+    // Confirms arrive on RabbitMQ threads; their UI updates are coalesced per pulse
+    private final UiUpdateBus uiBus = new UiUpdateBus();
     private RabbitMQManager rmq;
+    private WritePipeline writePipeline;
     private TextField lineNumberField;
     private TextArea contentArea;
-    private ListView<String> historyListView;
+    private ListView<HistoryEntry> historyListView;
     private Label statusLabel;
     private ProgressIndicator sendingIndicator;
     private Button sendButton;
@@ -33,7 +73,9 @@ public class ClientWriterFX extends Application {
     public void start(Stage stage) {
         try {
             // Initialize RabbitMQ
+            MetricsExporter.start(AppConfig.METRICS_CLIENT_PORT);
             rmq = new RabbitMQManager();
+            writePipeline = new WritePipeline(rmq);
 
             // Build UI
             BorderPane root = new BorderPane();
@@ -63,6 +105,7 @@ public class ClientWriterFX extends Application {
             stage.setTitle("TextSync Writer Client");
             stage.setOnCloseRequest(e -> closeResources());
             stage.show();
+            uiBus.start();
 
             updateStatus("Ready to send messages", Color.GREEN);
 
@@ -110,7 +153,11 @@ public class ClientWriterFX extends Application {
         sendingIndicator.setVisible(false);
         sendingIndicator.setMaxSize(20, 20);
 
-        HBox buttonBox = new HBox(10, sendButton, sendingIndicator);
+        Button sendLinesButton = new Button("Send Each Line");
+        sendLinesButton.setTooltip(new Tooltip("Sends every line of the content as its own write, numbered from the line number above"));
+        sendLinesButton.setOnAction(e -> sendEachLine());
+
+        HBox buttonBox = new HBox(10, sendButton, sendLinesButton, sendingIndicator);
         buttonBox.setAlignment(Pos.CENTER_LEFT);
 
         // Quick template buttons
@@ -164,17 +211,20 @@ public class ClientWriterFX extends Application {
         historyListView = new ListView<>(messageHistory);
         historyListView.setCellFactory(lv -> new ListCell<>() {
             @Override
-            protected void updateItem(String item, boolean empty) {
+            protected void updateItem(HistoryEntry item, boolean empty) {
                 super.updateItem(item, empty);
                 if (empty || item == null) {
                     setText(null);
                     setGraphic(null);
                 } else {
-                    setText(item);
-                    if (item.contains("SUCCESS")) {
+                    String text = item.toString();
+                    setText(text);
+                    if (text.contains("SUCCESS")) {
                         setTextFill(Color.GREEN);
-                    } else if (item.contains("ERROR")) {
+                    } else if (text.contains("ERROR")) {
                         setTextFill(Color.RED);
+                    } else if (text.contains("SENDING")) {
+                        setTextFill(Color.BLUE);
                     } else {
                         setTextFill(Color.BLACK);
                     }
@@ -225,42 +275,89 @@ public class ClientWriterFX extends Application {
             return;
         }
 
-        int lineNumber;
+        Integer lineNumber = parseLineNumber(lineNumberText);
+        if (lineNumber == null) return;
+
+        // Queued on the write pipeline; the history row tracks the broker's confirm
+        HistoryEntry entry = new HistoryEntry("line " + lineNumber, 1);
+        addHistory(entry);
+        track(entry, writePipeline.submit("WRITE " + lineNumber + " " + content));
+        lineNumberField.clear();
+        contentArea.clear();
+        updatePending();
+    }
+
+    // Bulk paste: every line of the content becomes its own write, numbered from the line number
+    // field on. The pipeline keeps its window full, so this runs at the broker's confirm rate.
+    private void sendEachLine() {
+        String lineNumberText = lineNumberField.getText().trim();
+        String content = contentArea.getText();
+
+        if (lineNumberText.isEmpty() || content.isEmpty()) {
+            showError("Line number and content are required");
+            return;
+        }
+
+        Integer firstLine = parseLineNumber(lineNumberText);
+        if (firstLine == null) return;
+
+        String[] lines = content.split("\\R");
+        HistoryEntry entry = new HistoryEntry("lines " + firstLine + "-" + (firstLine + lines.length - 1), lines.length);
+        addHistory(entry);
+        for (int i = 0; i < lines.length; i++) {
+            track(entry, writePipeline.submit("WRITE " + (firstLine + i) + " " + lines[i]));
+        }
+        lineNumberField.clear();
+        contentArea.clear();
+        updatePending();
+    }
+
+    private Integer parseLineNumber(String text) {
         try {
-            lineNumber = Integer.parseInt(lineNumberText);
+            int lineNumber = Integer.parseInt(text);
             if (lineNumber <= 0) {
                 showError("Line number must be positive");
-                return;
+                return null;
             }
+            return lineNumber;
         } catch (NumberFormatException e) {
             showError("Line number must be an integer");
-            return;
+            return null;
+        }
+    }
+
+    private void addHistory(HistoryEntry entry) {
+        messageHistory.add(0, entry);
+        if (messageHistory.size() > HISTORY_LIMIT) {
+            messageHistory.remove(HISTORY_LIMIT, messageHistory.size());
         }
+    }
 
-        // Disable UI during sending
-        sendButton.setDisable(true);
-        sendingIndicator.setVisible(true);
-        updateStatus("Sending message...", Color.BLUE);
+    // Runs on the thread that settles the write: the broker's confirm or the pipeline's sender
+    private void track(HistoryEntry entry, CompletableFuture<Void> write) {
+        write.whenComplete((ok, error) -> {
+            if (error == null) {
+                entry.confirmed.incrementAndGet();
+                sentCounter.incrementAndGet();
+            } else {
+                entry.failed.incrementAndGet();
+                entry.lastError = error.getMessage();
+                LoggerUtil.error("Failed to send message", error instanceof Exception ? (Exception) error : new RuntimeException(error));
+            }
+            uiBus.update("history", historyListView::refresh);
+            uiBus.update("pending", this::updatePending);
+        });
+    }
 
-        // Use Platform.runLater for UI updates
-        try {
-            String message = "WRITE " + lineNumber + " " + content;
-            rmq.publish(message);
-            sentCounter.incrementAndGet();
-
-            String timestamp = java.time.LocalTime.now().toString().substring(0, 8);
-            messageHistory.add(0, "[" + timestamp + "] SUCCESS: Sent line " + lineNumber);
-            updateStatus("Message sent successfully", Color.GREEN);
-            lineNumberField.clear();
-            contentArea.clear();
-        } catch (Exception e) {
-            LoggerUtil.error("Failed to send message", e);
-            String timestamp = java.time.LocalTime.now().toString().substring(0, 8);
-            messageHistory.add(0, "[" + timestamp + "] ERROR: Failed to send - " + e.getMessage());
-            updateStatus("Failed to send message", Color.RED);
-        } finally {
-            sendButton.setDisable(false);
-            sendingIndicator.setVisible(false);
+    // FX thread
+    private void updatePending() {
+        int pending = writePipeline.getPendingCount();
+        sendingIndicator.setVisible(pending > 0);
+        if (pending > 0) {
+            updateStatus("Sending... " + pending + " write(s) awaiting confirmation", Color.BLUE);
+        } else {
+            boolean failed = !messageHistory.isEmpty() && messageHistory.get(0).failed.get() > 0;
+            updateStatus(failed ? "Failed to send message" : "Message sent successfully", failed ? Color.RED : Color.GREEN);
         }
     }
 
@@ -281,6 +378,10 @@ public class ClientWriterFX extends Application {
 
     private void closeResources() {
         try {
+            uiBus.stop();
+            if (writePipeline != null) {
+                writePipeline.close();
+            }
             if (rmq != null) {
                 rmq.close();
             }
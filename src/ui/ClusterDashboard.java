@@ -0,0 +1,236 @@
+package ui;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.Label;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.Priority;
+import javafx.util.Duration;
+import messaging.RabbitMQManager;
+import messaging.ReplicaRegistry;
+import utils.LoggerUtil;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Live charts of how the cluster is doing, fed by replica heartbeats: apply rate, queue depth,
+ * read latency (p50 and p99) and replication lag, one series per replica. Heartbeats are only
+ * queued as they arrive; every {@link #REFRESH_MILLIS} the queue is folded into one point per
+ * replica (rates and medians averaged, depth, p99 and lag at their worst), so the charts redraw
+ * at a fixed, low rate however many replicas report. Each series keeps the last
+ * {@link #MAX_POINTS} points.
+ */
+public class ClusterDashboard extends BorderPane {
+    static final long REFRESH_MILLIS = 2000;
+    static final int MAX_POINTS = 150;
+
+    // What one heartbeat said, copied off the member as it arrived
+    private static class Sample {
+        final int replicaId;
+        final double applyRate;
+        final int queueDepth;
+        final double readP50Millis;
+        final double readP99Millis;
+        final long readCount;
+        final long lagMillis;
+
+        Sample(ReplicaRegistry.Member member) {
+            replicaId = member.getReplicaId();
+            applyRate = member.getApplyRate();
+            queueDepth = member.getQueueDepth();
+            readP50Millis = member.getReadP50Millis();
+            readP99Millis = member.getReadP99Millis();
+            readCount = member.getReadCount();
+            lagMillis = member.getLagMillis();
+        }
+    }
+
+    // Samples of one replica folded into a single chart point
+    private static class Bucket {
+        int samples;
+        double applyRate;
+        int queueDepth;
+        long reads;
+        double readP50Millis;
+        double readP99Millis;
+        long lagMillis;
+
+        void add(Sample sample) {
+            samples++;
+            applyRate += sample.applyRate;
+            queueDepth = Math.max(queueDepth, sample.queueDepth);
+            lagMillis = Math.max(lagMillis, sample.lagMillis);
+            if (sample.readCount > 0) {
+                // Medians weighted by how many reads each interval saw
+                readP50Millis += sample.readP50Millis * sample.readCount;
+                reads += sample.readCount;
+                readP99Millis = Math.max(readP99Millis, sample.readP99Millis);
+            }
+        }
+    }
+
+    // The series a replica has in each chart
+    private static class ReplicaSeries {
+        final XYChart.Series<Number, Number> applyRate = new XYChart.Series<>();
+        final XYChart.Series<Number, Number> queueDepth = new XYChart.Series<>();
+        final XYChart.Series<Number, Number> readP50 = new XYChart.Series<>();
+        final XYChart.Series<Number, Number> readP99 = new XYChart.Series<>();
+        final XYChart.Series<Number, Number> lag = new XYChart.Series<>();
+
+        ReplicaSeries(int replicaId) {
+            String name = "Replica " + replicaId;
+            applyRate.setName(name);
+            queueDepth.setName(name);
+            readP50.setName(name + " p50");
+            readP99.setName(name + " p99");
+            lag.setName(name);
+        }
+    }
+
+    private final Queue<Sample> samples = new ConcurrentLinkedQueue<>();
+    private final Map<Integer, ReplicaSeries> series = new TreeMap<>();
+    private final LineChart<Number, Number> applyRateChart = createChart("Apply rate", "writes/s");
+    private final LineChart<Number, Number> queueDepthChart = createChart("Queue depth", "messages");
+    private final LineChart<Number, Number> readLatencyChart = createChart("Read latency", "ms");
+    private final LineChart<Number, Number> lagChart = createChart("Replication lag", "ms");
+    private final Label statusLabel = new Label("Connecting...");
+    private final Timeline refresh = new Timeline(new KeyFrame(Duration.millis(REFRESH_MILLIS), e -> drain()));
+    private final long startedAt = System.currentTimeMillis();
+    private volatile RabbitMQManager rmq;
+    private boolean closed; // guarded by this
+
+    public ClusterDashboard() {
+        setPadding(new Insets(10));
+
+        GridPane charts = new GridPane();
+        charts.setHgap(10);
+        charts.setVgap(10);
+        charts.add(applyRateChart, 0, 0);
+        charts.add(queueDepthChart, 1, 0);
+        charts.add(readLatencyChart, 0, 1);
+        charts.add(lagChart, 1, 1);
+        for (LineChart<Number, Number> chart : List.of(applyRateChart, queueDepthChart, readLatencyChart, lagChart)) {
+            GridPane.setHgrow(chart, Priority.ALWAYS);
+            GridPane.setVgrow(chart, Priority.ALWAYS);
+        }
+
+        statusLabel.getStyleClass().add("status-label");
+        setTop(statusLabel);
+        setCenter(charts);
+        BorderPane.setMargin(charts, new Insets(10, 0, 0, 0));
+
+        refresh.setCycleCount(Timeline.INDEFINITE);
+    }
+
+    private static LineChart<Number, Number> createChart(String title, String unit) {
+        NumberAxis time = new NumberAxis();
+        time.setLabel("s");
+        time.setForceZeroInRange(false);
+        NumberAxis value = new NumberAxis();
+        value.setLabel(unit);
+
+        LineChart<Number, Number> chart = new LineChart<>(time, value);
+        chart.setTitle(title);
+        chart.setAnimated(false);
+        chart.setCreateSymbols(false);
+        return chart;
+    }
+
+    // Connects off the FX thread and starts charting
+    public void start() {
+        refresh.play();
+        Thread connector = new Thread(() -> {
+            try {
+                RabbitMQManager manager = new RabbitMQManager();
+                ReplicaRegistry registry = manager.startMembership();
+                registry.addListener(new ReplicaRegistry.Listener() {
+                    @Override
+                    public void onHeartbeat(ReplicaRegistry.Member member) {
+                        samples.add(new Sample(member));
+                    }
+                });
+                synchronized (ClusterDashboard.this) {
+                    if (!closed) {
+                        rmq = manager;
+                        return;
+                    }
+                }
+                manager.close();
+            } catch (Exception e) {
+                LoggerUtil.error("Dashboard failed to subscribe to heartbeats", e);
+                Platform.runLater(() -> statusLabel.setText("Failed to connect to message broker: " + e.getMessage()));
+            }
+        }, "dashboard-connect");
+        connector.setDaemon(true);
+        connector.start();
+    }
+
+    private void drain() {
+        RabbitMQManager manager = rmq;
+        if (manager == null) return;
+
+        Map<Integer, Bucket> buckets = new HashMap<>();
+        Sample sample;
+        while ((sample = samples.poll()) != null) {
+            buckets.computeIfAbsent(sample.replicaId, k -> new Bucket()).add(sample);
+        }
+
+        double at = (System.currentTimeMillis() - startedAt) / 1000.0;
+        buckets.forEach((replicaId, bucket) -> plot(replicaId, bucket, at));
+
+        ReplicaRegistry registry = manager.getRegistry();
+        statusLabel.setText("Replicas up: " + (registry != null ? registry.getLiveCount() : 0) + "   " +
+                "(one point per " + REFRESH_MILLIS / 1000 + " s, last " + MAX_POINTS + " points)");
+    }
+
+    private void plot(int replicaId, Bucket bucket, double at) {
+        ReplicaSeries replica = series.get(replicaId);
+        if (replica == null) {
+            replica = new ReplicaSeries(replicaId);
+            series.put(replicaId, replica);
+            applyRateChart.getData().add(replica.applyRate);
+            queueDepthChart.getData().add(replica.queueDepth);
+            readLatencyChart.getData().add(replica.readP50);
+            readLatencyChart.getData().add(replica.readP99);
+            lagChart.getData().add(replica.lag);
+        }
+
+        append(replica.applyRate, at, bucket.applyRate / bucket.samples);
+        append(replica.queueDepth, at, bucket.queueDepth);
+        append(replica.lag, at, bucket.lagMillis);
+        if (bucket.reads > 0) {
+            append(replica.readP50, at, bucket.readP50Millis / bucket.reads);
+            append(replica.readP99, at, bucket.readP99Millis);
+        }
+    }
+
+    private static void append(XYChart.Series<Number, Number> series, double at, double value) {
+        series.getData().add(new XYChart.Data<>(at, value));
+        if (series.getData().size() > MAX_POINTS) {
+            series.getData().remove(0);
+        }
+    }
+
+    public void close() {
+        refresh.stop();
+        RabbitMQManager manager;
+        synchronized (ClusterDashboard.this) {
+            closed = true;
+            manager = rmq;
+        }
+        if (manager != null) {
+            manager.close();
+        }
+    }
+}
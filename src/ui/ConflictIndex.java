@@ -0,0 +1,139 @@
+package ui;
+
+import ui.ClientReaderV2FX.LineItem;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * What the reader's table needs to know about one load of replica data, computed once off the
+ * FX thread: for every line number the distinct versions (content and the replicas holding it),
+ * the latest version, and which rows conflict. A row conflicts when another replica holds a
+ * different version of the same line. Lines are grouped and analysed in parallel, after which
+ * highlighting and the "Latest Only" / "Conflicts Only" views are plain lookups. Views are sets
+ * of positions in {@link #getAllItems()}, the same positions the content filter's
+ * {@link TrigramIndex} matches, so a filtered view is the intersection of the two.
+ */
+public class ConflictIndex {
+    public static final ConflictIndex EMPTY = build(Map.of());
+
+    private final List<LineItem> allItems;
+    private final Map<Integer, Map<String, Set<Integer>>> versions;
+    private final BitSet latest;
+    private final BitSet conflictPositions;
+    private final Set<LineItem> conflicts;
+    private final TrigramIndex contentIndex;
+
+    private ConflictIndex(List<LineItem> allItems, Map<Integer, Map<String, Set<Integer>>> versions,
+                          BitSet latest, BitSet conflictPositions) {
+        this.allItems = allItems;
+        this.versions = versions;
+        this.latest = latest;
+        this.conflictPositions = conflictPositions;
+        this.conflicts = new HashSet<>();
+        conflictPositions.stream().forEach(position -> conflicts.add(allItems.get(position)));
+        this.contentIndex = new TrigramIndex(allItems, LineItem::getContent);
+    }
+
+    public static ConflictIndex build(Map<Integer, List<LineItem>> replicaData) {
+        List<LineItem> allItems = new ArrayList<>();
+        replicaData.values().forEach(allItems::addAll);
+
+        ConcurrentMap<Integer, List<Integer>> byLine = IntStream.range(0, allItems.size()).boxed().parallel()
+                .collect(Collectors.groupingByConcurrent(position -> allItems.get(position).getLineNumber()));
+
+        Map<Integer, Map<String, Set<Integer>>> versions = new ConcurrentHashMap<>();
+        Set<Integer> latest = ConcurrentHashMap.newKeySet();
+        Set<Integer> conflicts = ConcurrentHashMap.newKeySet();
+
+        byLine.entrySet().parallelStream().forEach(line -> {
+            List<Integer> positions = line.getValue();
+            Map<String, Set<Integer>> lineVersions = new HashMap<>();
+            int newest = -1;
+            for (int position : positions) {
+                LineItem item = allItems.get(position);
+                lineVersions.computeIfAbsent(item.getContent(), k -> new HashSet<>()).add(item.getReplicaId());
+                if (newest < 0 || item.isNewerThan(allItems.get(newest))) newest = position;
+            }
+            versions.put(line.getKey(), lineVersions);
+            latest.add(newest);
+
+            if (lineVersions.size() > 1) {
+                for (int position : positions) {
+                    if (heldElsewhere(lineVersions, allItems.get(position))) conflicts.add(position);
+                }
+            }
+        });
+
+        return new ConflictIndex(Collections.unmodifiableList(allItems), versions, toBitSet(latest), toBitSet(conflicts));
+    }
+
+    private static BitSet toBitSet(Set<Integer> positions) {
+        BitSet bits = new BitSet();
+        positions.forEach(bits::set);
+        return bits;
+    }
+
+    // True if a replica other than the item's holds a different version of its line
+    private static boolean heldElsewhere(Map<String, Set<Integer>> lineVersions, LineItem item) {
+        for (Map.Entry<String, Set<Integer>> version : lineVersions.entrySet()) {
+            if (version.getKey().equals(item.getContent())) continue;
+            Set<Integer> replicas = version.getValue();
+            if (replicas.size() > 1 || !replicas.contains(item.getReplicaId())) return true;
+        }
+        return false;
+    }
+
+    public boolean isConflict(LineItem item) {
+        return conflicts.contains(item);
+    }
+
+    // Distinct contents of a line, each with the replicas that hold it
+    public Map<String, Set<Integer>> versionsOf(int lineNumber) {
+        return versions.getOrDefault(lineNumber, Map.of());
+    }
+
+    public List<LineItem> getAllItems() {
+        return allItems;
+    }
+
+    public TrigramIndex getContentIndex() {
+        return contentIndex;
+    }
+
+    // Items of a view, optionally restricted to the positions in filter
+    public List<LineItem> view(String viewMode, BitSet filter) {
+        BitSet positions;
+        switch (viewMode) {
+            case "Latest Only":
+                positions = (BitSet) latest.clone();
+                break;
+            case "Conflicts Only":
+                positions = (BitSet) conflictPositions.clone();
+                break;
+            case "All Lines":
+            default:
+                if (filter == null) return allItems;
+                positions = new BitSet(allItems.size());
+                positions.set(0, allItems.size());
+                break;
+        }
+        if (filter != null) {
+            positions.and(filter);
+        }
+
+        List<LineItem> items = new ArrayList<>(positions.cardinality());
+        positions.stream().forEach(position -> items.add(allItems.get(position)));
+        return items;
+    }
+}
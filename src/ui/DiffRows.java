@@ -0,0 +1,164 @@
+package ui;
+
+import ui.ClientReaderV2FX.LineItem;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unified-diff view of two replica documents as a read-only list, for a ListView to show. Only a
+ * short outline is stored: one segment per header, context run, removed run or added run. A row
+ * is made when the list is asked for it, which a ListView only does for the rows on screen, so
+ * a diff of any size costs the same to display. Hunks closer than twice {@link #CONTEXT} lines
+ * share one block, like diff -u.
+ */
+public class DiffRows extends AbstractList<DiffRows.Row> {
+    static final int CONTEXT = 3;
+
+    public enum Kind { HEADER, CONTEXT, REMOVED, ADDED }
+
+    public static class Row {
+        private final Kind kind;
+        private final String text;
+
+        Row(Kind kind, String text) {
+            this.kind = kind;
+            this.text = text;
+        }
+
+        public Kind getKind() { return kind; }
+        public String getText() { return text; }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    // A run of rows of one kind, starting at row firstRow and at the given line of each document
+    private static class Segment {
+        final Kind kind;
+        final int firstRow;
+        final int leftLine;
+        final int rightLine;
+        final String header;
+
+        Segment(Kind kind, int firstRow, int leftLine, int rightLine, String header) {
+            this.kind = kind;
+            this.firstRow = firstRow;
+            this.leftLine = leftLine;
+            this.rightLine = rightLine;
+            this.header = header;
+        }
+    }
+
+    private final List<LineItem> left;
+    private final List<LineItem> right;
+    private final List<Segment> segments = new ArrayList<>();
+    private int size;
+    private int removedLines;
+    private int addedLines;
+    private int blocks;
+
+    public DiffRows(List<LineItem> left, List<LineItem> right, List<LineDiff.Hunk> hunks) {
+        this.left = left;
+        this.right = right;
+
+        int i = 0;
+        while (i < hunks.size()) {
+            // Hunks whose context would touch go into the same block
+            int last = i;
+            while (last + 1 < hunks.size() && hunks.get(last + 1).getAStart() - hunks.get(last).getAEnd() <= 2 * CONTEXT) {
+                last++;
+            }
+            addBlock(hunks.subList(i, last + 1));
+            i = last + 1;
+        }
+    }
+
+    private void addBlock(List<LineDiff.Hunk> block) {
+        LineDiff.Hunk first = block.get(0);
+        LineDiff.Hunk last = block.get(block.size() - 1);
+        int before = Math.min(CONTEXT, first.getAStart());
+        int after = Math.min(CONTEXT, left.size() - last.getAEnd());
+        int leftFrom = first.getAStart() - before;
+        int rightFrom = first.getBStart() - before;
+
+        String header = "@@ -" + span(left, leftFrom, last.getAEnd() + after) + " +" +
+                span(right, rightFrom, last.getBEnd() + after) + " @@";
+        add(Kind.HEADER, 1, leftFrom, rightFrom, header);
+
+        int l = leftFrom;
+        int r = rightFrom;
+        for (LineDiff.Hunk hunk : block) {
+            add(Kind.CONTEXT, hunk.getAStart() - l, l, r, null);
+            add(Kind.REMOVED, hunk.getAEnd() - hunk.getAStart(), hunk.getAStart(), hunk.getBStart(), null);
+            add(Kind.ADDED, hunk.getBEnd() - hunk.getBStart(), hunk.getAEnd(), hunk.getBStart(), null);
+            removedLines += hunk.getAEnd() - hunk.getAStart();
+            addedLines += hunk.getBEnd() - hunk.getBStart();
+            l = hunk.getAEnd();
+            r = hunk.getBEnd();
+        }
+        add(Kind.CONTEXT, after, l, r, null);
+        blocks++;
+    }
+
+    private void add(Kind kind, int rows, int leftLine, int rightLine, String header) {
+        if (rows <= 0) return;
+        segments.add(new Segment(kind, size, leftLine, rightLine, header));
+        size += rows;
+    }
+
+    // Line numbers a range of a document covers
+    private static String span(List<LineItem> document, int from, int to) {
+        if (from >= to) return "no lines";
+        int firstLine = document.get(from).getLineNumber();
+        int lastLine = document.get(to - 1).getLineNumber();
+        return firstLine == lastLine ? "line " + firstLine : "lines " + firstLine + "-" + lastLine;
+    }
+
+    @Override
+    public Row get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Row " + index + " of " + size);
+
+        // Last segment starting at or before index
+        int lo = 0;
+        int hi = segments.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (segments.get(mid).firstRow <= index) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        Segment segment = segments.get(lo);
+        int offset = index - segment.firstRow;
+
+        switch (segment.kind) {
+            case HEADER:
+                return new Row(Kind.HEADER, segment.header);
+            case REMOVED:
+                return new Row(Kind.REMOVED, format('-', left.get(segment.leftLine + offset)));
+            case ADDED:
+                return new Row(Kind.ADDED, format('+', right.get(segment.rightLine + offset)));
+            case CONTEXT:
+            default:
+                return new Row(Kind.CONTEXT, format(' ', left.get(segment.leftLine + offset)));
+        }
+    }
+
+    private static String format(char marker, LineItem item) {
+        return marker + String.format(" %6d  ", item.getLineNumber()) + item.getContent();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public int getRemovedLines() { return removedLines; }
+    public int getAddedLines() { return addedLines; }
+    public int getBlockCount() { return blocks; }
+}
@@ -0,0 +1,214 @@
+package ui;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Myers' O(ND) diff in linear space: the middle snake of the shortest edit script splits the
+ * problem in two, and each half is solved the same way, so memory stays proportional to the
+ * input however many edits there are. Lines are compared as int symbols; equal lines must have
+ * equal symbols. As in GNU diff, lines that never occur in the other sequence are marked changed
+ * up front and left out of the search, which keeps two mostly unrelated documents cheap.
+ */
+public class LineDiff {
+
+    // Lines [aStart, aEnd) of a were replaced by lines [bStart, bEnd) of b; either side may be empty
+    public static class Hunk {
+        private final int aStart;
+        private final int aEnd;
+        private final int bStart;
+        private final int bEnd;
+
+        Hunk(int aStart, int aEnd, int bStart, int bEnd) {
+            this.aStart = aStart;
+            this.aEnd = aEnd;
+            this.bStart = bStart;
+            this.bEnd = bEnd;
+        }
+
+        public int getAStart() { return aStart; }
+        public int getAEnd() { return aEnd; }
+        public int getBStart() { return bStart; }
+        public int getBEnd() { return bEnd; }
+
+        // The same change seen from the other side
+        public Hunk reversed() {
+            return new Hunk(bStart, bEnd, aStart, aEnd);
+        }
+    }
+
+    private final int[] a;
+    private final int[] b;
+    private final boolean[] removed;
+    private final boolean[] added;
+
+    private LineDiff(int[] a, int[] b) {
+        this.a = a;
+        this.b = b;
+        this.removed = new boolean[a.length];
+        this.added = new boolean[b.length];
+    }
+
+    // Hunks turning a into b, in order; symbols are non-negative and below symbolCount
+    public static List<Hunk> diff(int[] a, int[] b, int symbolCount) {
+        LineDiff diff = new LineDiff(a, b);
+        diff.run(symbolCount);
+        return diff.hunks();
+    }
+
+    private void run(int symbolCount) {
+        boolean[] inA = new boolean[symbolCount];
+        boolean[] inB = new boolean[symbolCount];
+        for (int symbol : a) inA[symbol] = true;
+        for (int symbol : b) inB[symbol] = true;
+
+        // Only lines the other side also has can be part of a common subsequence
+        int[] aIndex = keptLines(a, inB, removed);
+        int[] bIndex = keptLines(b, inA, added);
+        int[] aKept = symbolsAt(a, aIndex);
+        int[] bKept = symbolsAt(b, bIndex);
+
+        compare(aKept, 0, aKept.length, bKept, 0, bKept.length, aIndex, bIndex);
+    }
+
+    private static int[] keptLines(int[] lines, boolean[] inOther, boolean[] changed) {
+        int kept = 0;
+        int[] index = new int[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            if (inOther[lines[i]]) {
+                index[kept++] = i;
+            } else {
+                changed[i] = true;
+            }
+        }
+        return Arrays.copyOf(index, kept);
+    }
+
+    private static int[] symbolsAt(int[] lines, int[] index) {
+        int[] symbols = new int[index.length];
+        for (int i = 0; i < index.length; i++) {
+            symbols[i] = lines[index[i]];
+        }
+        return symbols;
+    }
+
+    private void compare(int[] x, int xLo, int xHi, int[] y, int yLo, int yHi, int[] xIndex, int[] yIndex) {
+        while (xLo < xHi && yLo < yHi && x[xLo] == y[yLo]) {
+            xLo++;
+            yLo++;
+        }
+        while (xLo < xHi && yLo < yHi && x[xHi - 1] == y[yHi - 1]) {
+            xHi--;
+            yHi--;
+        }
+
+        if (xLo == xHi) {
+            for (int j = yLo; j < yHi; j++) added[yIndex[j]] = true;
+        } else if (yLo == yHi) {
+            for (int i = xLo; i < xHi; i++) removed[xIndex[i]] = true;
+        } else {
+            long split = middleSnake(x, xLo, xHi, y, yLo, yHi);
+            if (split < 0) {
+                for (int i = xLo; i < xHi; i++) removed[xIndex[i]] = true;
+                for (int j = yLo; j < yHi; j++) added[yIndex[j]] = true;
+                return;
+            }
+            int xMid = xLo + (int) (split >>> 32);
+            int yMid = yLo + (int) split;
+            compare(x, xLo, xMid, y, yLo, yMid, xIndex, yIndex);
+            compare(x, xMid, xHi, y, yMid, yHi, xIndex, yIndex);
+        }
+    }
+
+    // Searches forward from the start and backward from the end until the paths meet, and returns
+    // where the forward path is then (x offset in the high half, y offset in the low), or -1 if the
+    // ranges share nothing. Ranges are non-empty and differ in their first and last lines.
+    private static long middleSnake(int[] x, int xLo, int xHi, int[] y, int yLo, int yHi) {
+        int n = xHi - xLo;
+        int m = yHi - yLo;
+        int maxD = (n + m + 1) / 2;
+        int offset = maxD;
+        int length = 2 * maxD + 2;
+        int[] forward = new int[length];
+        int[] backward = new int[length];
+        Arrays.fill(forward, -1);
+        Arrays.fill(backward, -1);
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+
+        int delta = n - m;
+        // With an odd delta the paths can only meet on a forward step, with an even one on a backward step
+        boolean meetForward = (delta & 1) != 0;
+        // Diagonals trimmed off either end once a path has run past the edge of the grid
+        int forwardStart = 0, forwardEnd = 0, backwardStart = 0, backwardEnd = 0;
+
+        for (int d = 0; d < maxD; d++) {
+            for (int k = -d + forwardStart; k <= d - forwardEnd; k += 2) {
+                int at = offset + k;
+                int px = k == -d || (k != d && forward[at - 1] < forward[at + 1]) ? forward[at + 1] : forward[at - 1] + 1;
+                int py = px - k;
+                while (px < n && py < m && x[xLo + px] == y[yLo + py]) {
+                    px++;
+                    py++;
+                }
+                forward[at] = px;
+                if (px > n) {
+                    forwardEnd += 2;
+                } else if (py > m) {
+                    forwardStart += 2;
+                } else if (meetForward) {
+                    int other = offset + delta - k;
+                    if (other >= 0 && other < length && backward[other] != -1 && px >= n - backward[other]) {
+                        return ((long) px << 32) | py;
+                    }
+                }
+            }
+
+            for (int k = -d + backwardStart; k <= d - backwardEnd; k += 2) {
+                int at = offset + k;
+                int px = k == -d || (k != d && backward[at - 1] < backward[at + 1]) ? backward[at + 1] : backward[at - 1] + 1;
+                int py = px - k;
+                while (px < n && py < m && x[xHi - 1 - px] == y[yHi - 1 - py]) {
+                    px++;
+                    py++;
+                }
+                backward[at] = px;
+                if (px > n) {
+                    backwardEnd += 2;
+                } else if (py > m) {
+                    backwardStart += 2;
+                } else if (!meetForward) {
+                    int other = offset + delta - k;
+                    if (other >= 0 && other < length && forward[other] != -1) {
+                        int fx = forward[other];
+                        int fy = fx - (other - offset);
+                        if (fx >= n - px) {
+                            return ((long) fx << 32) | fy;
+                        }
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    private List<Hunk> hunks() {
+        List<Hunk> hunks = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < a.length || j < b.length) {
+            if (i < a.length && j < b.length && !removed[i] && !added[j]) {
+                i++;
+                j++;
+                continue;
+            }
+            int aStart = i;
+            int bStart = j;
+            while (i < a.length && removed[i]) i++;
+            while (j < b.length && added[j]) j++;
+            hunks.add(new Hunk(aStart, i, bStart, j));
+        }
+        return hunks;
+    }
+}
@@ -0,0 +1,185 @@
+package ui;
+
+import javafx.collections.ObservableListBase;
+import javafx.collections.transformation.FilteredList;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import utils.LoggerUtil.Level;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Log panel that keeps only the newest {@code capacity} entries in a ring buffer and shows them
+ * in a ListView, which only lays out the visible rows. Appending costs the same after an hour
+ * as after a second, and memory stays bounded. Entries can be filtered by minimum level and
+ * searched by text; filtering only applies while a filter is set.
+ */
+public class LogView extends BorderPane {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    public static class Entry {
+        private final Level level;
+        private final long timeMillis;
+        private final String message;
+
+        public Entry(Level level, String message) {
+            this.level = level;
+            this.timeMillis = System.currentTimeMillis();
+            this.message = message;
+        }
+
+        public Level getLevel() { return level; }
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return "[" + TIME_FORMAT.format(Instant.ofEpochMilli(timeMillis)) + "] " + message;
+        }
+    }
+
+    // Fixed-capacity list: once full, every append drops the oldest entry
+    static class RingList extends ObservableListBase<Entry> {
+        private final Entry[] items;
+        private int start;
+        private int size;
+
+        RingList(int capacity) {
+            this.items = new Entry[capacity];
+        }
+
+        @Override
+        public Entry get(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+            return items[(start + index) % items.length];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        // One change event per batch: the evicted head, then the appended tail
+        void append(List<Entry> batch) {
+            int capacity = items.length;
+            List<Entry> added = batch.size() > capacity ? batch.subList(batch.size() - capacity, batch.size()) : batch;
+            if (added.isEmpty()) return;
+
+            int evicted = Math.max(0, size + added.size() - capacity);
+            List<Entry> removed = new ArrayList<>(evicted);
+            for (int i = 0; i < evicted; i++) {
+                removed.add(get(i));
+            }
+
+            beginChange();
+            if (evicted > 0) {
+                nextRemove(0, removed);
+            }
+            for (Entry entry : added) {
+                if (size == capacity) {
+                    items[start] = entry;
+                    start = (start + 1) % capacity;
+                } else {
+                    items[(start + size) % capacity] = entry;
+                    size++;
+                }
+            }
+            nextAdd(size - added.size(), size);
+            endChange();
+        }
+    }
+
+    private final RingList entries;
+    private final ListView<Entry> listView = new ListView<>();
+    private final ComboBox<Level> levelFilter = new ComboBox<>();
+    private final TextField searchField = new TextField();
+    private final CheckBox followTail = new CheckBox("Follow");
+    private final Label countLabel = new Label();
+
+    public LogView(int capacity) {
+        this.entries = new RingList(capacity);
+
+        levelFilter.getItems().addAll(Level.values());
+        levelFilter.setValue(Level.DEBUG);
+        levelFilter.setOnAction(e -> applyFilter());
+        searchField.setPromptText("Search log...");
+        searchField.textProperty().addListener((obs, oldVal, newVal) -> applyFilter());
+        followTail.setSelected(true);
+
+        HBox toolbar = new HBox(8, new Label("Level:"), levelFilter, searchField, followTail, countLabel);
+        toolbar.setAlignment(Pos.CENTER_LEFT);
+        toolbar.setPadding(new Insets(0, 0, 5, 0));
+        HBox.setHgrow(searchField, Priority.ALWAYS);
+
+        listView.setItems(entries);
+        listView.setCellFactory(lv -> new ListCell<>() {
+            @Override
+            protected void updateItem(Entry item, boolean empty) {
+                super.updateItem(item, empty);
+                if (empty || item == null) {
+                    setText(null);
+                    setStyle("");
+                } else {
+                    setText(item.toString());
+                    setStyle(styleFor(item.getLevel()));
+                }
+            }
+        });
+
+        setTop(toolbar);
+        setCenter(listView);
+        updateCount();
+    }
+
+    // FX thread only
+    public void append(List<Entry> batch) {
+        entries.append(batch);
+        updateCount();
+        if (followTail.isSelected() && !listView.getItems().isEmpty()) {
+            listView.scrollTo(listView.getItems().size() - 1);
+        }
+    }
+
+    private void applyFilter() {
+        Level minimum = levelFilter.getValue();
+        String query = searchField.getText() == null ? "" : searchField.getText().toLowerCase(Locale.ROOT);
+        if (minimum == Level.DEBUG && query.isEmpty()) {
+            listView.setItems(entries);
+        } else {
+            listView.setItems(new FilteredList<>(entries, entry -> entry.getLevel().compareTo(minimum) >= 0
+                    && (query.isEmpty() || entry.getMessage().toLowerCase(Locale.ROOT).contains(query))));
+        }
+        updateCount();
+    }
+
+    private void updateCount() {
+        int shown = listView.getItems().size();
+        countLabel.setText(shown == entries.size() ? entries.size() + " entries" : shown + " of " + entries.size());
+    }
+
+    private static String styleFor(Level level) {
+        switch (level) {
+            case ERROR:
+                return "-fx-text-fill: #c0392b;";
+            case WARN:
+                return "-fx-text-fill: #d35400;";
+            case DEBUG:
+                return "-fx-text-fill: #7f8c8d;";
+            default:
+                return "";
+        }
+    }
+}
@@ -1,13 +1,9 @@
 package ui;
 
-import com.rabbitmq.client.AMQP;
-import config.AppConfig;
 import database.TextEntity;
-import database.TextRepository;
-import messaging.RabbitMQManager;
-import org.json.JSONArray;
-import utils.LoggerUtil;
-import javafx.application.Platform;
+import replica.ReplicaEngine;
+import replica.ReplicaObserver;
+import utils.LoggerUtil.Level;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -18,34 +14,52 @@ import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
-import org.json.JSONObject;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class ReplicaController {
+    // Same order as TextRepository.getAllLines
+    private static final Comparator<TextEntity> DB_ORDER =
+            Comparator.comparingInt(TextEntity::getLineNumber).thenComparingLong(TextEntity::getTimestamp);
+    // Above this many writes in one pulse, merging into a fresh list beats inserting one by one
+    private static final int MERGE_THRESHOLD = 64;
 
     private final int replicaId;
     private final VBox view;
-    private final TextArea logArea = new TextArea();
+    private static final int LOG_CAPACITY = 5000;
+
+    private final LogView logView = new LogView(LOG_CAPACITY);
     private final ListView<TextEntity> dbContentsView = new ListView<>();
     private final ObservableList<TextEntity> dbContents = FXCollections.observableArrayList();
-    private final TextRepository repository;
     private final SimpleBooleanProperty isRunning = new SimpleBooleanProperty(true);
     private final SimpleBooleanProperty isFaulty = new SimpleBooleanProperty(false);
     private final Label statusLabel;
-    private final AtomicInteger receivedMessages = new AtomicInteger(0);
-    private final AtomicInteger processedMessages = new AtomicInteger(0);
-    private RabbitMQManager rmq;
+    private final ReplicaEngine engine;
+    // Applied writes waiting for the next animation pulse to be patched into dbContents
+    private final Queue<TextEntity> pendingWrites = new ConcurrentLinkedQueue<>();
+    // Engine callbacks arrive on background threads; every UI change goes through here
+    private final UiUpdateBus uiBus = new UiUpdateBus(logView::append);
+    // Engine start/stop and database loads, in order and off the FX thread; the engine reports
+    // back through its observer
+    private final ExecutorService worker;
+    private boolean reloading; // FX thread; applied writes stay queued while a reload is running
 
     public ReplicaController(int replicaId) {
         this.replicaId = replicaId;
-        this.repository = new TextRepository(replicaId);
-        this.statusLabel = new Label("Status: Online");
-        this.statusLabel.setTextFill(Color.GREEN);
+        this.engine = new ReplicaEngine(replicaId);
+        this.worker = Executors.newSingleThreadExecutor(r -> new Thread(r, "replica-" + replicaId + "-worker"));
+        this.statusLabel = new Label("Status: Starting");
+        this.statusLabel.setTextFill(Color.ORANGE);
         this.statusLabel.setFont(Font.font("System", FontWeight.BOLD, 12));
         this.view = buildUI();
-        startListeningToQueue();
+        uiBus.start();
+        startEngine();
         refreshDbContents(); // Initial load of DB contents
     }
 
@@ -69,9 +83,7 @@ public class ReplicaController {
         tabPane.setTabClosingPolicy(TabPane.TabClosingPolicy.UNAVAILABLE);
 
         // Log tab
-        logArea.setEditable(false);
-        logArea.setWrapText(true);
-        Tab logTab = new Tab("Logs", new BorderPane(logArea));
+        Tab logTab = new Tab("Logs", logView);
 
         // Database content tab
         dbContentsView.setItems(dbContents);
@@ -126,7 +138,7 @@ public class ReplicaController {
         javafx.animation.Timeline statsUpdater = new javafx.animation.Timeline(
                 new javafx.animation.KeyFrame(javafx.util.Duration.seconds(1), e -> {
                     messageStats.setText(String.format("Received: %d | Processed: %d",
-                            receivedMessages.get(), processedMessages.get()));
+                            engine.getReceivedCount(), engine.getProcessedCount()));
                 })
         );
         statsUpdater.setCycleCount(javafx.animation.Animation.INDEFINITE);
@@ -135,117 +147,62 @@ public class ReplicaController {
         return box;
     }
 
-    private void processMessage(String message, AMQP.BasicProperties properties) throws Exception {
-        String replyTo = properties != null ? properties.getReplyTo() : null;
-        String correlationId = properties != null ? properties.getCorrelationId() : null;
-        
-        if (message.startsWith("WRITE ")) {
-            String[] parts = message.substring(6).split(" ", 2);
-            if (parts.length != 2) {
-                throw new IllegalArgumentException("Invalid WRITE message format. Expected: WRITE <lineNumber> <content>");
+    private void startEngine() {
+        engine.addObserver(new ReplicaObserver() {
+            @Override
+            public void onStatusChanged(Status status, String detail) {
+                switch (status) {
+                    case ONLINE -> updateStatus("Online", Color.GREEN);
+                    case CATCHING_UP -> updateStatus("Catching up (" + detail + ")", Color.ORANGE);
+                    case CONNECTION_ERROR -> updateStatus("Connection Error", Color.RED);
+                    case STOPPED -> updateStatus("Stopped", Color.ORANGE);
+                    case FAILED -> updateStatus("BREAKDOWN", Color.RED);
+                }
             }
-            int lineNumber = Integer.parseInt(parts[0]);
-            String content = parts[1];
-            repository.insertLine(lineNumber, content);
-            Platform.runLater(() -> log("✅ Processed write: Line " + lineNumber));
-        } else if (message.equals("READ LAST")) {
-            TextEntity lastLine = repository.getLastLine();
-            if (lastLine != null && replyTo != null) {
-                JSONObject response = new JSONObject();
-                response.put("replicaId", replicaId);
-                response.put("lineNumber", lastLine.getLineNumber());
-                response.put("content", lastLine.getContent());
-                response.put("timestamp", lastLine.getTimestamp());
-                
-                rmq.publishResponse(response.toString(), replyTo, correlationId);
-                Platform.runLater(() -> log("📖 Sent last line response: " + lastLine));
-            } else if (replyTo != null) {
-                JSONObject response = new JSONObject();
-                response.put("replicaId", replicaId);
-                response.put("empty", true);
-                rmq.publishResponse(response.toString(), replyTo, correlationId);
-                Platform.runLater(() -> log("📖 Sent empty response - no data"));
-            } else {
-                Platform.runLater(() -> log("📖 Read last line request without reply queue"));
+
+            @Override
+            public void onMessageReceived(String message) {
+                log("messages received", "📥 Received: " + message);
             }
-        } else if (message.equals("READ ALL")) {
-            Platform.runLater(() -> log("📖 Reading all lines..."));
-            repository.getAllLines().forEach(text -> {
-                Platform.runLater(() -> log("  → Line " + text.getLineNumber() + ": " + text.getContent()));
-            });
-        } else if (message.equals("READ ALL_JSON")) {
-            // Handle the READ ALL_JSON command
-            Platform.runLater(() -> log("📖 Reading all lines for JSON response..."));
-            if (replyTo != null) {
-                List<TextEntity> allLines = repository.getAllLines();
-                JSONObject response = new JSONObject();
-                response.put("replicaId", replicaId);
-
-                JSONArray linesArray = new JSONArray();
-                allLines.forEach(line -> {
-                    JSONObject lineObj = new JSONObject();
-                    lineObj.put("lineNumber", line.getLineNumber());
-                    lineObj.put("content", line.getContent());
-                    lineObj.put("timestamp", line.getTimestamp());
-                    linesArray.put(lineObj);
-                });
-
-                response.put("lines", linesArray);
-                rmq.publishResponse(response.toString(), replyTo, correlationId);
-                Platform.runLater(() -> log("📖 Sent JSON response with " + allLines.size() + " lines"));
-            } else {
-                Platform.runLater(() -> log("📖 READ ALL_JSON request received without reply queue"));
+
+            @Override
+            public void onRequestServed(String summary) {
+                log("requests served", "📖 " + summary);
             }
-        } else {
-            try {
-                JSONObject json = new JSONObject(message);
-                if (json.has("line_number") && json.has("content")) {
-                    int lineNumber = json.getInt("line_number");
-                    String content = json.getString("content");
-                    repository.insertLine(lineNumber, content);
-                    Platform.runLater(() -> log("✅ Processed JSON write: Line " + lineNumber));
+
+            @Override
+            public void onWritesApplied(List<TextEntity> entries) {
+                if (entries.size() == 1) {
+                    log("writes applied", "✅ Processed write: Line " + entries.get(0).getLineNumber());
+                } else {
+                    log("writes applied", "✅ Replayed " + entries.size() + " writes from replication log");
                 }
-            } catch (Exception ex) {
-                Platform.runLater(() -> log("❌ Invalid message format: " + message));
-                throw ex;
+                pendingWrites.addAll(entries);
+                uiBus.update("writes", ReplicaController.this::applyPendingWrites);
             }
-        }
-    }
 
-    private void startListeningToQueue() {
-        try {
-            rmq = new RabbitMQManager();
-            String queueName = AppConfig.QUEUE_PREFIX + replicaId;
-            
-            // Declare queue and ensure binding
-            rmq.declareQueue(queueName);
-
-            rmq.consume(queueName, (consumerTag, delivery) -> {
-                if (!isRunning.get() || isFaulty.get()) return;
-
-                String message = new String(delivery.getBody(), "UTF-8");
-                receivedMessages.incrementAndGet();
-                Platform.runLater(() -> log("📥 Received: " + message));
-
-                try {
-                    // Process the message with its properties
-                    processMessage(message, delivery.getProperties());
-                    processedMessages.incrementAndGet();
-                    Platform.runLater(this::refreshDbContents);
-                } catch (Exception ex) {
-                    Platform.runLater(() -> log("❌ Error processing message: " + ex.getMessage()));
-                    LoggerUtil.error("Failed to process message in replica " + replicaId, ex);
+            @Override
+            public void onReplayProgress(long replayed, long lagMillis, boolean caughtUp) {
+                if (caughtUp) {
+                    log("✅ Caught up with replication log (" + replayed + " missed writes replayed)");
                 }
-            });
+            }
 
-            updateStatus("Online", Color.GREEN);
-            log("🚀 Replica " + replicaId + " is listening for messages...");
+            @Override
+            public void onError(String message, Exception e) {
+                log(Level.ERROR, "errors", "❌ " + message + ": " + e.getMessage());
+            }
+        });
 
-        } catch (Exception e) {
-            updateStatus("Connection Error", Color.RED);
-            log("❌ Failed to connect to RabbitMQ: " + e.getMessage());
-            LoggerUtil.error("Failed to connect RabbitMQ for replica " + replicaId, e);
-        }
+        // Connecting, declaring queues and indexing the table can take a while
+        worker.execute(() -> {
+            try {
+                engine.start();
+                log("🚀 Replica " + replicaId + " is listening for messages...");
+            } catch (Exception e) {
+                log(Level.ERROR, "errors", "❌ Failed to connect to RabbitMQ: " + e.getMessage());
+            }
+        });
     }
 
     private void toggleRunning(Button button) {
@@ -253,12 +210,12 @@ public class ReplicaController {
         isRunning.set(newStatus);
 
         if (newStatus) {
-            updateStatus("Online", Color.GREEN);
             button.setText("Stop");
             button.setStyle("-fx-background-color: #ff6b6b; -fx-text-fill: white;");
             log("🟢 Replica resumed operation");
+            worker.execute(engine::resume);
         } else {
-            updateStatus("Stopped", Color.ORANGE);
+            worker.execute(engine::stop);
             button.setText("Resume");
             button.setStyle("-fx-background-color: #4dabf7; -fx-text-fill: white;");
             log("🟠 Replica operation paused");
@@ -268,7 +225,7 @@ public class ReplicaController {
     private void simulateFailure(Button button) {
         isFaulty.set(true);
         isRunning.set(false);
-        updateStatus("BREAKDOWN", Color.RED);
+        worker.execute(engine::breakDown);
         log("🔴 Replica has experienced a simulated breakdown!");
 
         // Simulate glitchy behavior using Timeline
@@ -276,14 +233,14 @@ public class ReplicaController {
         for (int i = 0; i < 5; i++) {
             glitchTimeline.getKeyFrames().addAll(
                 new javafx.animation.KeyFrame(javafx.util.Duration.seconds(i * 0.4), e -> 
-                    log("⚠️ ERROR: Connection lost to message broker")),
+                    log(Level.WARN, "events", "⚠️ ERROR: Connection lost to message broker")),
                 new javafx.animation.KeyFrame(javafx.util.Duration.seconds(i * 0.4 + 0.2), e -> 
-                    log("⚠️ ERROR: Database connection unstable"))
+                    log(Level.WARN, "events", "⚠️ ERROR: Database connection unstable"))
             );
         }
         glitchTimeline.getKeyFrames().add(
             new javafx.animation.KeyFrame(javafx.util.Duration.seconds(2.0), e -> 
-                log("💀 System in failure state - recovery required"))
+                log(Level.ERROR, "events", "💀 System in failure state - recovery required"))
         );
         glitchTimeline.play();
     }
@@ -302,31 +259,117 @@ public class ReplicaController {
             new javafx.animation.KeyFrame(javafx.util.Duration.seconds(3), e -> {
                 log("✅ Recovery complete! System is back online.");
                 isRunning.set(true);
-                updateStatus("Recovered", Color.GREEN);
+                worker.execute(engine::resume);
             })
         );
         recoveryTimeline.play();
     }
 
+    // Full reload, only on start and on request; applied writes are patched in by applyPendingWrites.
+    // The query runs on the worker, only swapping in the rows happens on the FX thread.
     private void refreshDbContents() {
-        Platform.runLater(() -> {
-            dbContents.clear();
-            dbContents.addAll(repository.getAllLines());
+        if (reloading) return;
+        reloading = true;
+        worker.execute(() -> {
+            List<TextEntity> rows;
+            try {
+                rows = engine.getRepository().getAllLines();
+            } catch (RuntimeException e) {
+                log(Level.ERROR, "errors", "❌ Failed to load database contents: " + e.getMessage());
+                uiBus.post(this::finishReload);
+                return;
+            }
+            uiBus.post(() -> {
+                dbContents.setAll(rows);
+                finishReload();
+            });
         });
     }
 
+    // Writes applied during the query may or may not be in its rows; merging skips the ones that are
+    private void finishReload() {
+        reloading = false;
+        applyPendingWrites();
+    }
+
+    // Runs at most once per pulse on the FX thread, so a burst of writes costs one pass here
+    private void applyPendingWrites() {
+        if (reloading || pendingWrites.isEmpty()) return;
+
+        List<TextEntity> batch = new ArrayList<>();
+        TextEntity entry;
+        while ((entry = pendingWrites.poll()) != null) {
+            batch.add(entry);
+        }
+
+        if (batch.size() <= MERGE_THRESHOLD) {
+            for (TextEntity write : batch) {
+                int index = insertionPoint(dbContents, write);
+                if (index >= 0) dbContents.add(index, write);
+            }
+            return;
+        }
+
+        batch.sort(DB_ORDER);
+        List<TextEntity> merged = new ArrayList<>(dbContents.size() + batch.size());
+        int i = 0;
+        for (TextEntity write : batch) {
+            while (i < dbContents.size() && DB_ORDER.compare(dbContents.get(i), write) <= 0) {
+                merged.add(dbContents.get(i++));
+            }
+            if (insertionPoint(merged, write) >= 0) merged.add(write);
+        }
+        merged.addAll(dbContents.subList(i, dbContents.size()));
+        dbContents.setAll(merged);
+    }
+
+    // Index after the last row ordered at or before the entry, or -1 if an identical row is
+    // already shown (a write the initial load or a reload picked up as well)
+    private static int insertionPoint(List<TextEntity> rows, TextEntity entry) {
+        int low = 0;
+        int high = rows.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (DB_ORDER.compare(rows.get(mid), entry) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low - 1; i >= 0 && DB_ORDER.compare(rows.get(i), entry) == 0; i--) {
+            if (rows.get(i).getContent().equals(entry.getContent())) return -1;
+        }
+        return low;
+    }
+
     private void updateStatus(String status, Color color) {
-        Platform.runLater(() -> {
+        uiBus.update("status", () -> {
             statusLabel.setText("Status: " + status);
             statusLabel.setTextFill(color);
         });
     }
 
     private void log(String msg) {
-        Platform.runLater(() -> logArea.appendText("[" + java.time.LocalTime.now().toString().substring(0, 8) + "] " + msg + "\n"));
+        log("events", msg);
+    }
+
+    private void log(String category, String msg) {
+        log(Level.INFO, category, msg);
+    }
+
+    // category is what overflowing lines are summarised as, e.g. "… 500 messages received (not shown)"
+    private void log(Level level, String category, String msg) {
+        uiBus.append(category, new LogView.Entry(level, msg));
     }
 
     public VBox getView() {
         return view;
     }
+
+    public void shutdown() {
+        uiBus.stop();
+        // The worker thread keeps the JVM up until the engine has closed its channels
+        worker.execute(engine::close);
+        worker.shutdown();
+    }
 }
\ No newline at end of file
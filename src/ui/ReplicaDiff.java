@@ -0,0 +1,129 @@
+package ui;
+
+import ui.ClientReaderV2FX.LineItem;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Line diffs between every pair of replicas in one load of replica data. A replica's document is
+ * the newest version of each of its lines, in line order. Contents are numbered once for all
+ * replicas, then the pairs are split recursively across the fork-join pool and each is diffed
+ * with {@link LineDiff}, so picking two replicas in the diff view is only a lookup.
+ */
+public class ReplicaDiff {
+    public static final ReplicaDiff EMPTY = build(List.of());
+
+    private final Map<Integer, List<LineItem>> documents;
+    private final Map<Long, List<LineDiff.Hunk>> hunks;
+
+    private ReplicaDiff(Map<Integer, List<LineItem>> documents, Map<Long, List<LineDiff.Hunk>> hunks) {
+        this.documents = documents;
+        this.hunks = hunks;
+    }
+
+    public static ReplicaDiff build(List<LineItem> items) {
+        Map<Integer, Map<Integer, LineItem>> newest = new TreeMap<>();
+        for (LineItem item : items) {
+            newest.computeIfAbsent(item.getReplicaId(), k -> new TreeMap<>())
+                    .merge(item.getLineNumber(), item, (kept, other) -> other.isNewerThan(kept) ? other : kept);
+        }
+
+        Map<Integer, List<LineItem>> documents = new TreeMap<>();
+        Map<String, Integer> symbols = new HashMap<>();
+        List<Integer> replicaIds = new ArrayList<>(newest.keySet());
+        int[][] encoded = new int[replicaIds.size()][];
+        for (int r = 0; r < replicaIds.size(); r++) {
+            List<LineItem> document = new ArrayList<>(newest.get(replicaIds.get(r)).values());
+            documents.put(replicaIds.get(r), document);
+            encoded[r] = new int[document.size()];
+            for (int i = 0; i < document.size(); i++) {
+                encoded[r][i] = symbols.computeIfAbsent(document.get(i).getContent(), k -> symbols.size());
+            }
+        }
+
+        List<int[]> pairs = new ArrayList<>();
+        for (int a = 0; a < replicaIds.size(); a++) {
+            for (int b = a + 1; b < replicaIds.size(); b++) {
+                pairs.add(new int[]{a, b});
+            }
+        }
+        List<List<LineDiff.Hunk>> results = new ArrayList<>(pairs.size());
+        pairs.forEach(pair -> results.add(null));
+        if (!pairs.isEmpty()) {
+            ForkJoinPool.commonPool().invoke(new PairDiffs(pairs, encoded, symbols.size(), results, 0, pairs.size()));
+        }
+
+        Map<Long, List<LineDiff.Hunk>> hunks = new HashMap<>();
+        for (int p = 0; p < pairs.size(); p++) {
+            int[] pair = pairs.get(p);
+            hunks.put(key(replicaIds.get(pair[0]), replicaIds.get(pair[1])), results.get(p));
+        }
+        return new ReplicaDiff(documents, hunks);
+    }
+
+    // Diffs pairs [from, to), halving the range until a single pair is left
+    private static class PairDiffs extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<int[]> pairs;
+        private final int[][] encoded;
+        private final int symbolCount;
+        private final List<List<LineDiff.Hunk>> results;
+        private final int from;
+        private final int to;
+
+        PairDiffs(List<int[]> pairs, int[][] encoded, int symbolCount, List<List<LineDiff.Hunk>> results, int from, int to) {
+            this.pairs = pairs;
+            this.encoded = encoded;
+            this.symbolCount = symbolCount;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                int[] pair = pairs.get(from);
+                results.set(from, LineDiff.diff(encoded[pair[0]], encoded[pair[1]], symbolCount));
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new PairDiffs(pairs, encoded, symbolCount, results, from, mid),
+                    new PairDiffs(pairs, encoded, symbolCount, results, mid, to));
+        }
+    }
+
+    private static long key(int lower, int higher) {
+        return ((long) lower << 32) | (higher & 0xffffffffL);
+    }
+
+    public List<Integer> getReplicaIds() {
+        return new ArrayList<>(documents.keySet());
+    }
+
+    public List<LineItem> documentOf(int replicaId) {
+        return documents.getOrDefault(replicaId, List.of());
+    }
+
+    // Hunks turning the left replica's document into the right one's
+    public List<LineDiff.Hunk> between(int left, int right) {
+        if (left == right) return List.of();
+        List<LineDiff.Hunk> pair = hunks.getOrDefault(key(Math.min(left, right), Math.max(left, right)), List.of());
+        if (left < right) return pair;
+
+        List<LineDiff.Hunk> reversed = new ArrayList<>(pair.size());
+        pair.forEach(hunk -> reversed.add(hunk.reversed()));
+        return reversed;
+    }
+
+    public DiffRows rows(int left, int right) {
+        return new DiffRows(documentOf(left), documentOf(right), between(left, right));
+    }
+}
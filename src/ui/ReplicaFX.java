@@ -26,6 +26,7 @@ public class ReplicaFX extends Application {
         // Position the window based on replica ID to avoid overlap
         stage.setX(50 + (replicaId - 1) * 100);
         stage.setY(50 + (replicaId - 1) * 50);
+        stage.setOnCloseRequest(event -> controller.shutdown());
         
         stage.show();
     }
@@ -20,6 +20,7 @@ import java.util.List;
 public class ReplicaManagerFX extends Application {
 
     private List<Process> replicaProcesses = new ArrayList<>();
+    private List<ClusterDashboard> dashboards = new ArrayList<>();
     private Label statusLabel;
 
     @Override
@@ -90,7 +91,12 @@ public class ReplicaManagerFX extends Application {
         buttonContainer.setAlignment(Pos.CENTER);
         buttonContainer.getChildren().addAll(launchButton, stopReplicasButton);
 
-        content.getChildren().addAll(replicaControls, buttonContainer);
+        Button dashboardButton = new Button("Cluster Dashboard");
+        dashboardButton.getStyleClass().add("info-button");
+        dashboardButton.setMaxWidth(Double.MAX_VALUE);
+        dashboardButton.setOnAction(e -> openDashboard());
+
+        content.getChildren().addAll(replicaControls, buttonContainer, dashboardButton);
 
         TitledPane pane = new TitledPane("Replica Management", content);
         pane.setCollapsible(true);
@@ -288,6 +294,25 @@ public class ReplicaManagerFX extends Application {
 
 
 
+    private void openDashboard() {
+        ClusterDashboard dashboard = new ClusterDashboard();
+        dashboards.add(dashboard);
+
+        Scene scene = new Scene(dashboard, 1000, 700);
+        scene.getStylesheets().add(getClass().getResource("/ui/styles.css").toExternalForm());
+        Stage stage = new Stage();
+        stage.setTitle("Cluster Dashboard");
+        stage.setScene(scene);
+        stage.setOnHidden(e -> {
+            dashboard.close();
+            dashboards.remove(dashboard);
+        });
+        stage.show();
+
+        dashboard.start();
+        updateStatus("Cluster dashboard opened");
+    }
+
     private void updateStatus(String status) {
         statusLabel.setText("System Status: " + status);
     }
@@ -295,6 +320,8 @@ public class ReplicaManagerFX extends Application {
     private void cleanupResources() {
         // Stop all replicas when application closes
         stopAllReplicas();
+        new ArrayList<>(dashboards).forEach(ClusterDashboard::close);
+        dashboards.clear();
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,131 @@
+package ui;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Substring index over a fixed list of texts, for case-insensitive "contains" filtering.
+ * Each position is posted under every three-character sequence its text contains. A query
+ * then only has to check the texts listed under its rarest trigram, not all of them.
+ * Queries shorter than three characters fall back to a scan. A query that extends the
+ * previous one can pass the previous matches in, and then only those are checked.
+ */
+public class TrigramIndex {
+    private final String[] texts;
+    private final Map<Long, int[]> postings;
+
+    public <T> TrigramIndex(List<T> items, Function<T, String> text) {
+        texts = new String[items.size()];
+        // Open addressing on the raw trigram while building, to avoid boxing millions of keys
+        long[] keys = new long[1024];
+        Postings[] lists = new Postings[keys.length];
+        int distinct = 0;
+        for (int i = 0; i < texts.length; i++) {
+            String lower = normalize(text.apply(items.get(i)));
+            texts[i] = lower;
+            for (int j = 0; j + 3 <= lower.length(); j++) {
+                long key = trigram(lower, j);
+                int slot = slotOf(keys, lists, key);
+                if (lists[slot] == null) {
+                    keys[slot] = key;
+                    lists[slot] = new Postings();
+                    if (++distinct * 2 > keys.length) {
+                        Postings[] oldLists = lists;
+                        long[] oldKeys = keys;
+                        keys = new long[oldKeys.length * 2];
+                        lists = new Postings[keys.length];
+                        for (int s = 0; s < oldKeys.length; s++) {
+                            if (oldLists[s] != null) {
+                                int moved = slotOf(keys, lists, oldKeys[s]);
+                                keys[moved] = oldKeys[s];
+                                lists[moved] = oldLists[s];
+                            }
+                        }
+                        slot = slotOf(keys, lists, key);
+                    }
+                }
+                lists[slot].add(i);
+            }
+        }
+
+        postings = new HashMap<>(distinct * 4 / 3 + 1);
+        for (int s = 0; s < keys.length; s++) {
+            if (lists[s] != null) postings.put(keys[s], lists[s].toArray());
+        }
+    }
+
+    // Slot holding key, or the empty slot where it belongs
+    private static int slotOf(long[] keys, Postings[] lists, long key) {
+        int mask = keys.length - 1;
+        int slot = (int) (key * 0x9E3779B97F4A7C15L >>> 40) & mask;
+        while (lists[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    public static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    private static long trigram(String s, int at) {
+        return ((long) s.charAt(at) << 32) | ((long) s.charAt(at + 1) << 16) | s.charAt(at + 2);
+    }
+
+    public int size() {
+        return texts.length;
+    }
+
+    // Positions whose text contains the query, looking only at positions in within unless it is null
+    public BitSet search(String query, BitSet within) {
+        String q = normalize(query);
+        BitSet matches = new BitSet(texts.length);
+
+        int[] rarest = null;
+        for (int j = 0; j + 3 <= q.length(); j++) {
+            int[] list = postings.get(trigram(q, j));
+            if (list == null) return matches;
+            if (rarest == null || list.length < rarest.length) rarest = list;
+        }
+
+        if (rarest != null && (within == null || rarest.length < within.cardinality())) {
+            for (int position : rarest) {
+                if ((within == null || within.get(position)) && texts[position].contains(q)) {
+                    matches.set(position);
+                }
+            }
+        } else if (within != null) {
+            for (int position = within.nextSetBit(0); position >= 0; position = within.nextSetBit(position + 1)) {
+                if (texts[position].contains(q)) matches.set(position);
+            }
+        } else {
+            for (int position = 0; position < texts.length; position++) {
+                if (texts[position].contains(q)) matches.set(position);
+            }
+        }
+        return matches;
+    }
+
+    // Growable int list; positions arrive in order, so a repeated trigram is a repeat of the last one
+    private static class Postings {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int position) {
+            if (size > 0 && values[size - 1] == position) return;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = position;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
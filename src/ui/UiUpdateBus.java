@@ -0,0 +1,114 @@
+package ui;
+
+import javafx.animation.AnimationTimer;
+import utils.LoggerUtil.Level;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Collects UI updates from background threads and applies them on the FX thread once per
+ * animation pulse, instead of one Platform.runLater per update. Three kinds of update:
+ * <ul>
+ *   <li>{@link #update}: keyed state (a status label, a table rebuild); only the latest update
+ *       per key runs, however many were posted during the frame.</li>
+ *   <li>{@link #post}: one-off tasks, run in order within a per-frame time budget; the rest
+ *       wait for the next pulse.</li>
+ *   <li>{@link #append}: log entries, handed to the sink in one batch per pulse. At most
+ *       {@link #MAX_QUEUED_LINES} wait at a time; lines beyond that are only counted and shown
+ *       as a summary such as "N messages received".</li>
+ * </ul>
+ */
+public class UiUpdateBus {
+    static final int MAX_LINES_PER_PULSE = 200;
+    static final int MAX_QUEUED_LINES = 2000;
+    static final long FRAME_BUDGET_NANOS = 4_000_000; // Leaves most of a 60 Hz frame for layout and rendering
+
+    private final Map<Object, Runnable> latest = new ConcurrentHashMap<>();
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Queue<LogView.Entry> lines = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedLines = new AtomicInteger();
+    private final Map<String, LongAdder> overflow = new ConcurrentHashMap<>();
+    private final Consumer<List<LogView.Entry>> lineSink;
+    private final AnimationTimer pulse = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            drain();
+        }
+    };
+
+    // lineSink receives the log entries of one pulse at once, on the FX thread
+    public UiUpdateBus(Consumer<List<LogView.Entry>> lineSink) {
+        this.lineSink = lineSink;
+    }
+
+    public UiUpdateBus() {
+        this(batch -> {});
+    }
+
+    public void start() {
+        pulse.start();
+    }
+
+    public void stop() {
+        pulse.stop();
+    }
+
+    public void update(Object key, Runnable update) {
+        latest.put(key, update);
+    }
+
+    public void post(Runnable task) {
+        tasks.add(task);
+    }
+
+    // category names what the line is about, e.g. "messages received", for the overflow summary
+    public void append(String category, LogView.Entry line) {
+        if (queuedLines.incrementAndGet() > MAX_QUEUED_LINES) {
+            queuedLines.decrementAndGet();
+            overflow.computeIfAbsent(category, k -> new LongAdder()).increment();
+            return;
+        }
+        lines.add(line);
+    }
+
+    private void drain() {
+        long deadline = System.nanoTime() + FRAME_BUDGET_NANOS;
+
+        for (Object key : latest.keySet()) {
+            // remove() hands over whichever update is newest at this instant
+            Runnable update = latest.remove(key);
+            if (update != null) update.run();
+        }
+
+        Runnable task;
+        while (System.nanoTime() < deadline && (task = tasks.poll()) != null) {
+            task.run();
+        }
+
+        if (queuedLines.get() == 0 && overflow.isEmpty()) return;
+        List<LogView.Entry> batch = new ArrayList<>();
+        LogView.Entry line;
+        while (batch.size() < MAX_LINES_PER_PULSE && (line = lines.poll()) != null) {
+            batch.add(line);
+        }
+        queuedLines.addAndGet(-batch.size());
+
+        for (String category : overflow.keySet()) {
+            LongAdder dropped = overflow.remove(category);
+            if (dropped != null) {
+                batch.add(new LogView.Entry(Level.WARN, "… " + dropped.sum() + " " + category + " (not shown)"));
+            }
+        }
+        if (!batch.isEmpty()) {
+            lineSink.accept(batch);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package utils;
+
+/**
+ * Hybrid logical clock (physical milliseconds in the upper 48 bits, a logical counter in the
+ * lower 16). Timestamps are unique and strictly increasing within a process, stay close to
+ * wall-clock time, and never go backwards relative to any timestamp this process has seen,
+ * so "latest" comparisons give the same answer on every replica.
+ */
+public class HybridLogicalClock {
+    private static final int LOGICAL_BITS = 16;
+    private static final HybridLogicalClock SHARED = new HybridLogicalClock();
+
+    private long last;
+
+    // One clock per process: writers stamp with it and every received timestamp advances it
+    public static HybridLogicalClock shared() {
+        return SHARED;
+    }
+
+    public synchronized long now() {
+        long physical = System.currentTimeMillis() << LOGICAL_BITS;
+        last = physical > last ? physical : last + 1;
+        return last;
+    }
+
+    // Merges a timestamp received from another node so later local timestamps order after it
+    public synchronized long update(long remote) {
+        long physical = System.currentTimeMillis() << LOGICAL_BITS;
+        long max = Math.max(last, remote);
+        last = physical > max ? physical : max + 1;
+        return last;
+    }
+
+    public static long physicalTime(long timestamp) {
+        return timestamp >>> LOGICAL_BITS;
+    }
+
+    public static int logicalCount(long timestamp) {
+        return (int) (timestamp & ((1L << LOGICAL_BITS) - 1));
+    }
+
+    // Rows written before HLC stamping hold plain epoch milliseconds, which are far smaller
+    public static long toEpochMillis(long timestamp) {
+        return timestamp >= (1L << 48) ? physicalTime(timestamp) : timestamp;
+    }
+}
@@ -1,34 +1,252 @@
 package utils;
+import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 
+/**
+ * Asynchronous logger. Callers only stamp the time and put the pattern and its arguments into
+ * a lock-free ring buffer; a single background thread formats the messages ("{}" placeholders
+ * are filled in there) and writes them out in batches.
+ *
+ * When the buffer is full, DEBUG/INFO/WARN messages are dropped (and counted) unless
+ * -Dlog.overflow=block is set, while ERROR messages always wait for room. The minimum level
+ * comes from -Dlog.level (default INFO) or {@link #setLevel}.
+ */
 public class LoggerUtil {
-    private static Consumer<String> logListener;
 
-    public static void log(String message) {
-        String formattedMessage = "[LOG " + LocalDateTime.now() + "] " + message;
-        System.out.println(formattedMessage);
-        if (logListener != null) {
-            logListener.accept(formattedMessage);
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    private static final int CAPACITY = 8192; // Power of two
+    private static final int MASK = CAPACITY - 1;
+    private static final int MAX_BATCH = 256;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    // Bounded multi-producer queue (Vyukov): a slot is free for position p when its sequence is p,
+    // and holds the event for p once its sequence is p + 1
+    private static final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private static final Level[] levels = new Level[CAPACITY];
+    private static final long[] times = new long[CAPACITY];
+    private static final String[] patterns = new String[CAPACITY];
+    private static final Object[][] arguments = new Object[CAPACITY][];
+    private static final Throwable[] errors = new Throwable[CAPACITY];
+    private static final AtomicLong tail = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final AtomicLong failed = new AtomicLong(); // writer thread only increments
+    private static volatile long head;
+
+    private static volatile Level threshold = parseLevel(System.getProperty("log.level", "INFO"));
+    private static final boolean blockWhenFull = "block".equalsIgnoreCase(System.getProperty("log.overflow"));
+    private static volatile Consumer<String> logListener;
+    private static final Thread writer;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            sequences.set(i, i);
+        }
+        writer = new Thread(LoggerUtil::drainLoop, "logger-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> flush(1000)));
+    }
+
+    // A bad -Dlog.level must not stop the process, so anything unknown means INFO
+    private static Level parseLevel(String name) {
+        try {
+            return Level.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown log.level '" + name + "', using INFO");
+            return Level.INFO;
         }
     }
 
+    public static void log(String message) {
+        enqueue(Level.INFO, message, null, null);
+    }
+
+    public static void debug(String pattern, Object... args) {
+        enqueue(Level.DEBUG, pattern, args, null);
+    }
+
+    public static void info(String pattern, Object... args) {
+        enqueue(Level.INFO, pattern, args, null);
+    }
+
+    public static void warn(String pattern, Object... args) {
+        enqueue(Level.WARN, pattern, args, null);
+    }
+
     public static void error(String message, Exception e) {
-        String formattedMessage = "[ERROR " + LocalDateTime.now() + "] " + message;
-        System.err.println(formattedMessage);
-        StringWriter sw = new StringWriter();
-        e.printStackTrace(new PrintWriter(sw));
-        System.err.println(sw);
+        enqueue(Level.ERROR, message, null, e);
+    }
 
-        if (logListener != null) {
-            logListener.accept(formattedMessage);
-            logListener.accept(sw.toString());
-        }
+    public static boolean isEnabled(Level level) {
+        return level.compareTo(threshold) >= 0;
+    }
+
+    public static void setLevel(Level level) {
+        threshold = level;
     }
 
     public static void setLogListener(Consumer<String> listener) {
         logListener = listener;
     }
-}
\ No newline at end of file
+
+    public static long getDroppedCount() {
+        return dropped.get();
+    }
+
+    // Messages whose formatting or listener threw; they are skipped, not retried
+    public static long getFailedCount() {
+        return failed.get();
+    }
+
+    // Waits until everything logged so far has been written, or the timeout elapses
+    public static void flush(long timeoutMillis) {
+        long target = tail.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (head < target && System.nanoTime() < deadline) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    private static void enqueue(Level level, String pattern, Object[] args, Throwable error) {
+        if (!isEnabled(level)) return;
+
+        long time = System.currentTimeMillis();
+        long position;
+        while (true) {
+            position = tail.get();
+            long sequence = sequences.get((int) (position & MASK));
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) break;
+            } else if (sequence < position) {
+                // Full: the writer has not freed this slot yet
+                if (level != Level.ERROR && !blockWhenFull) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                LockSupport.unpark(writer);
+                Thread.onSpinWait();
+            }
+        }
+
+        int slot = (int) (position & MASK);
+        levels[slot] = level;
+        times[slot] = time;
+        patterns[slot] = pattern;
+        arguments[slot] = args;
+        errors[slot] = error;
+        sequences.set(slot, position + 1);
+    }
+
+    private static void drainLoop() {
+        StringBuilder out = new StringBuilder();
+        StringBuilder err = new StringBuilder();
+        long reportedDrops = 0;
+        long reportedFailures = 0;
+
+        while (true) {
+            int drained = 0;
+            long position = head;
+            while (drained < MAX_BATCH) {
+                int slot = (int) (position & MASK);
+                if (sequences.get(slot) != position + 1) break;
+
+                try {
+                    format(levels[slot], times[slot], patterns[slot], arguments[slot], errors[slot], out, err);
+                } catch (Throwable t) {
+                    // A throwing toString() or listener must not kill the only thread that frees slots
+                    failed.incrementAndGet();
+                }
+                arguments[slot] = null;
+                errors[slot] = null;
+                sequences.set(slot, position + CAPACITY);
+                position++;
+                drained++;
+            }
+            head = position;
+
+            long drops = dropped.get();
+            if (drops > reportedDrops) {
+                out.append(prefix(Level.WARN, System.currentTimeMillis()))
+                        .append("Log buffer full, dropped ").append(drops - reportedDrops).append(" message(s)\n");
+                reportedDrops = drops;
+            }
+            long failures = failed.get();
+            if (failures > reportedFailures) {
+                err.append(prefix(Level.ERROR, System.currentTimeMillis()))
+                        .append("Failed to format or deliver ").append(failures - reportedFailures).append(" message(s)\n");
+                reportedFailures = failures;
+            }
+
+            write(System.out, out);
+            write(System.err, err);
+            if (drained == 0) {
+                LockSupport.parkNanos(1_000_000);
+            }
+        }
+    }
+
+    private static void format(Level level, long time, String pattern, Object[] args, Throwable error,
+                               StringBuilder out, StringBuilder err) {
+        String message = prefix(level, time) + substitute(pattern, args);
+        StringBuilder target = level == Level.ERROR ? err : out;
+        target.append(message).append('\n');
+
+        String stackTrace = null;
+        if (error != null) {
+            StringWriter sw = new StringWriter();
+            error.printStackTrace(new PrintWriter(sw));
+            stackTrace = sw.toString();
+            target.append(stackTrace).append('\n');
+        }
+
+        Consumer<String> listener = logListener;
+        if (listener != null) {
+            listener.accept(message);
+            if (stackTrace != null) {
+                listener.accept(stackTrace);
+            }
+        }
+    }
+
+    private static String prefix(Level level, long time) {
+        String tag = level == Level.INFO ? "LOG" : level.name();
+        LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+        return "[" + tag + " " + TIME_FORMAT.format(dateTime) + "] ";
+    }
+
+    // Fills "{}" placeholders in order, the way SLF4J does
+    private static String substitute(String pattern, Object[] args) {
+        if (args == null || args.length == 0) return pattern;
+
+        StringBuilder sb = new StringBuilder(pattern.length() + 32);
+        int argIndex = 0;
+        int start = 0;
+        int placeholder;
+        while (argIndex < args.length && (placeholder = pattern.indexOf("{}", start)) >= 0) {
+            sb.append(pattern, start, placeholder).append(args[argIndex++]);
+            start = placeholder + 2;
+        }
+        return sb.append(pattern, start, pattern.length()).toString();
+    }
+
+    private static void write(PrintStream stream, StringBuilder buffer) {
+        if (buffer.length() == 0) return;
+        stream.print(buffer);
+        stream.flush();
+        buffer.setLength(0);
+    }
+}